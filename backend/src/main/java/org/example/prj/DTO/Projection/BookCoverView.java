@@ -0,0 +1,6 @@
+package org.example.prj.DTO.Projection;
+
+public interface BookCoverView {
+    Long getId();
+    String getCoverImage();
+}
@@ -0,0 +1,8 @@
+package org.example.prj.DTO.Projection;
+
+public interface BookFacetView {
+    Long getId();
+    String getCategory();
+    String getLanguage();
+    String getSubject();
+}
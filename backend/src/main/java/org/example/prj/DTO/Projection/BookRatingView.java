@@ -0,0 +1,7 @@
+package org.example.prj.DTO.Projection;
+
+public interface BookRatingView {
+    Long getId();
+    double getRatingSum();
+    long getRatingCount();
+}
@@ -0,0 +1,10 @@
+package org.example.prj.DTO.Projection;
+
+// Chỉ các cột index tìm kiếm cần, không load description hay collection
+public interface BookSearchView {
+    Long getId();
+    String getTitle();
+    String getAuthor();
+    String getCategory();
+    String getSearchKey();
+}
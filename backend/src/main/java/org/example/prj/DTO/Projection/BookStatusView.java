@@ -0,0 +1,8 @@
+package org.example.prj.DTO.Projection;
+
+import org.example.prj.constant.StatusBook;
+
+public interface BookStatusView {
+    Long getBookId();
+    StatusBook getStatus();
+}
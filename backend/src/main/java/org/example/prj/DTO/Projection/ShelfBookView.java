@@ -0,0 +1,11 @@
+package org.example.prj.DTO.Projection;
+
+// Sách trong bookshelf kèm id của bookshelf_item (dùng làm cursor)
+public interface ShelfBookView {
+    Long getItemId();
+    Long getId();
+    String getTitle();
+    String getAuthor();
+    String getDescription();
+    String getCoverImage();
+}
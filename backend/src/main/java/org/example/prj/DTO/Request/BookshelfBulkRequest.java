@@ -0,0 +1,26 @@
+package org.example.prj.DTO.Request;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookshelfBulkRequest {
+    @Builder.Default
+    private List<Item> items = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private Long bookId;
+        // WANT, READING hoặc COMPLETED
+        private String status;
+    }
+}
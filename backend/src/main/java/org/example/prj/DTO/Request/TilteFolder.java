@@ -13,4 +13,10 @@ public class TilteFolder {
     Long count;
     String title;
     String description;
+
+    public TilteFolder(Long id, Long count, String title) {
+        this.id = id;
+        this.count = count;
+        this.title = title;
+    }
 }
@@ -14,4 +14,5 @@ public class BookDisplayResponse {
     private String author;
     private String decription;
     private String coverImage;
+    private String thumbnailUrl;
 }
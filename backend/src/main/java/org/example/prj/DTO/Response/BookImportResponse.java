@@ -0,0 +1,31 @@
+package org.example.prj.DTO.Response;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookImportResponse {
+    // Số dòng dữ liệu đọc được (không tính header)
+    private long total;
+    private long imported;
+    private long duplicates;
+    private long failed;
+    // Chỉ giữ tối đa BookImportService.MAX_REPORTED_ERRORS lỗi đầu tiên
+    @Builder.Default
+    private List<RowError> errors = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long row;
+        private String message;
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.prj.DTO.Response;
+
+import lombok.*;
+
+@Data
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookRatingResponse {
+    private Long bookId;
+    private double average;
+    private long count;
+}
@@ -0,0 +1,36 @@
+package org.example.prj.DTO.Response;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookshelfBulkResponse {
+    private long total;
+    private long added;
+    private long updated;
+    private long unchanged;
+    private long failed;
+    // Kết quả từng phần tử, cùng thứ tự với request
+    @Builder.Default
+    private List<ItemResult> results = new ArrayList<>();
+
+    public enum Outcome {
+        ADDED, UPDATED, UNCHANGED, BOOK_NOT_FOUND, INVALID_ITEM, DUPLICATE
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemResult {
+        private Long bookId;
+        private String status;
+        private Outcome outcome;
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.prj.DTO.Response;
+
+import lombok.*;
+
+@Data
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsResponse {
+    private long entries;
+    // Số byte ước lượng đang chiếm / giới hạn cấu hình
+    private long weightedBytes;
+    private long maxBytes;
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+    private long evictionCount;
+    private long evictionWeight;
+    private double averageLoadMillis;
+}
@@ -0,0 +1,21 @@
+package org.example.prj.DTO.Response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CursorPageResponse<T> {
+    private List<T> content;
+    private Integer size;
+    private boolean hasNext;
+    // Truyền lại qua ?cursor= để lấy trang kế tiếp, null khi đã hết
+    private String nextCursor;
+}
@@ -4,7 +4,6 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import lombok.*;
-import org.example.prj.entity.BookRating;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -25,6 +24,6 @@ public class DashboardResponse {
     private Long totalBooks;
     private Long view;
     private List<Long> users;
-    private List<BookRating> rating;
+    private List<RatingBucketResponse> rating;
     private LocalDateTime startDay;
 }
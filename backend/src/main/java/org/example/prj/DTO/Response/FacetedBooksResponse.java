@@ -0,0 +1,18 @@
+package org.example.prj.DTO.Response;
+
+import lombok.*;
+import org.springframework.data.domain.Page;
+
+import java.util.Map;
+
+@Data
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetedBooksResponse {
+    private Page<BookDisplayResponse> books;
+    // facet (category/language/subject) -> giá trị -> số sách khớp, sắp theo số lượng giảm dần
+    private Map<String, Map<String, Long>> facets;
+}
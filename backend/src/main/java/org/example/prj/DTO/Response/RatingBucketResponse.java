@@ -0,0 +1,15 @@
+package org.example.prj.DTO.Response;
+
+import lombok.*;
+
+@Data
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RatingBucketResponse {
+    // vd "3-4": điểm trung bình trong [3, 4), bucket cuối gồm cả 5
+    private String ratingRange;
+    private Long totalBooks;
+}
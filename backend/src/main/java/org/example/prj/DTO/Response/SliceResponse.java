@@ -0,0 +1,22 @@
+package org.example.prj.DTO.Response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SliceResponse<T> {
+    private List<T> content;
+    private Integer page;
+    private Integer size;
+    private boolean hasNext;
+    // Chỉ có khi gọi với withTotal=true; lấy từ bộ đếm trong bộ nhớ nên có thể lệch nhẹ
+    private Long approximateTotal;
+}
@@ -0,0 +1,19 @@
+package org.example.prj.DTO.Response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+@Data
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SuggestionResponse {
+    private String text;
+    // TITLE hoặc AUTHOR
+    private String type;
+    // Chỉ có với gợi ý TITLE
+    private Long bookId;
+}
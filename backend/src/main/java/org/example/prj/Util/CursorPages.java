@@ -0,0 +1,38 @@
+package org.example.prj.Util;
+
+import org.example.prj.DTO.Response.CursorPageResponse;
+import org.example.prj.exception.AppException;
+import org.example.prj.exception.ErrorCode;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Tạo trang keyset từ size + 1 dòng: dòng thừa chỉ để biết còn trang sau
+public final class CursorPages {
+    private CursorPages() {
+    }
+
+    // size do client truyền vào, dùng cho LIMIT size + 1 nên phải nằm trong 1..maxSize
+    public static int checkSize(Integer size, int maxSize) {
+        if (size == null || size < 1 || size > maxSize) {
+            throw new AppException(ErrorCode.INVALID_PAGE_SIZE);
+        }
+        return size;
+    }
+
+    public static <T> CursorPageResponse<T> of(List<T> rows, int size, Function<T, Long> idOf) {
+        return of(rows, size, idOf, Function.identity());
+    }
+
+    public static <T, R> CursorPageResponse<R> of(List<T> rows, int size, Function<T, Long> idOf,
+                                                  Function<T, R> mapper) {
+        boolean hasNext = rows.size() > size;
+        List<T> page = hasNext ? rows.subList(0, size) : rows;
+        return CursorPageResponse.<R>builder()
+                .content(page.stream().map(mapper).toList())
+                .size(page.size())
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? CursorCodec.encode(idOf.apply(page.get(page.size() - 1))) : null)
+                .build();
+    }
+}
@@ -0,0 +1,173 @@
+package org.example.prj.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PostConstruct;
+import org.example.prj.DTO.Response.BookDisplayResponse;
+import org.example.prj.DTO.Response.BookResponse;
+import org.example.prj.DTO.Response.CacheStatsResponse;
+import org.example.prj.entity.Book;
+import org.example.prj.event.BookChangedEvent;
+import org.example.prj.event.BooksImportedEvent;
+import org.example.prj.search.BookSearchIndex;
+import org.example.prj.search.SearchNormalizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Cache chi tiết sách, trang danh sách và trang tìm kiếm; xóa sau commit theo BookChangedEvent
+@Component
+public class CatalogCache {
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    @Value("${catalog.cache.detail-max-bytes:8388608}")
+    private long detailMaxBytes;
+    @Value("${catalog.cache.list-max-bytes:8388608}")
+    private long listMaxBytes;
+    @Value("${catalog.cache.search-max-bytes:16777216}")
+    private long searchMaxBytes;
+    // Lưới an toàn nếu có thay đổi không đi qua BookService (sửa tay trong DB...)
+    @Value("${catalog.cache.expire-minutes:30}")
+    private long expireMinutes;
+
+    private Cache<Long, BookResponse> details;
+    private Cache<ListKey, Page<BookDisplayResponse>> lists;
+    private Cache<SearchKey, Page<BookDisplayResponse>> searches;
+
+    private record ListKey(int page, int size) {
+    }
+
+    // query đã chuẩn hóa để "Nguyễn" và "nguyen" dùng chung một entry
+    private record SearchKey(String query, boolean fuzzy, int page, int size) {
+    }
+
+    @PostConstruct
+    void init() {
+        details = Caffeine.newBuilder()
+                .maximumWeight(detailMaxBytes)
+                .weigher((Long id, BookResponse book) -> weigh(book))
+                .expireAfterWrite(Duration.ofMinutes(expireMinutes))
+                .recordStats()
+                .build();
+        lists = Caffeine.newBuilder()
+                .maximumWeight(listMaxBytes)
+                .weigher((ListKey key, Page<BookDisplayResponse> page) -> weigh(page))
+                .expireAfterWrite(Duration.ofMinutes(expireMinutes))
+                .recordStats()
+                .build();
+        searches = Caffeine.newBuilder()
+                .maximumWeight(searchMaxBytes)
+                .weigher((SearchKey key, Page<BookDisplayResponse> page) -> key.query().length() * 2 + weigh(page))
+                .expireAfterWrite(Duration.ofMinutes(expireMinutes))
+                .recordStats()
+                .build();
+    }
+
+    public BookResponse getDetail(Long bookId, Supplier<BookResponse> loader) {
+        return details.get(bookId, id -> loader.get());
+    }
+
+    public Page<BookDisplayResponse> getList(int page, int size, Supplier<Page<BookDisplayResponse>> loader) {
+        return lists.get(new ListKey(page, size), key -> loader.get());
+    }
+
+    public Page<BookDisplayResponse> getSearch(String keyword, boolean fuzzy, int page, int size,
+                                               Supplier<Page<BookDisplayResponse>> loader) {
+        SearchKey searchKey = new SearchKey(SearchNormalizer.normalize(keyword), fuzzy, page, size);
+        return searches.get(searchKey, key -> loader.get());
+    }
+
+    // Chạy sau BookSearchIndex (@Order(0)) để trang tìm kiếm nạp lại không lấy từ index cũ
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        details.invalidate(event.getBookId());
+        lists.invalidateAll();
+
+        Book book = event.getBook();
+        String newKey = (book == null) ? null : currentSearchKey(book);
+        String oldKey = event.getPreviousSearchKey();
+        // Sách cũ chưa được backfill search_key: không biết nó từng khớp truy vấn nào
+        if (oldKey == null && event.getType() != BookChangedEvent.Type.CREATED) {
+            searches.invalidateAll();
+            return;
+        }
+        searches.asMap().keySet().removeIf(key ->
+                (oldKey != null && bookSearchIndex.matches(key.query(), key.fuzzy(), oldKey))
+                        || (newKey != null && bookSearchIndex.matches(key.query(), key.fuzzy(), newKey)));
+    }
+
+    // Import hàng loạt thì bỏ toàn bộ, sau khi các index đã dựng lại
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksImported(BooksImportedEvent event) {
+        invalidateAll();
+    }
+
+    public void invalidateAll() {
+        details.invalidateAll();
+        lists.invalidateAll();
+        searches.invalidateAll();
+    }
+
+    public Map<String, CacheStatsResponse> stats() {
+        Map<String, CacheStatsResponse> stats = new LinkedHashMap<>();
+        stats.put("details", toStatsResponse(details, detailMaxBytes));
+        stats.put("lists", toStatsResponse(lists, listMaxBytes));
+        stats.put("searches", toStatsResponse(searches, searchMaxBytes));
+        return stats;
+    }
+
+    static CacheStatsResponse toStatsResponse(Cache<?, ?> cache, long maxBytes) {
+        CacheStats stats = cache.stats();
+        return CacheStatsResponse.builder()
+                .entries(cache.estimatedSize())
+                .weightedBytes(cache.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(0L))
+                        .orElse(0L))
+                .maxBytes(maxBytes)
+                .hitCount(stats.hitCount())
+                .missCount(stats.missCount())
+                .hitRate(stats.hitRate())
+                .evictionCount(stats.evictionCount())
+                .evictionWeight(stats.evictionWeight())
+                .averageLoadMillis(stats.averageLoadPenalty() / 1_000_000.0)
+                .build();
+    }
+
+    static String currentSearchKey(Book book) {
+        return book.getSearchKey() != null ? book.getSearchKey()
+                : SearchNormalizer.searchKey(book.getTitle(), book.getAuthor(), book.getCategory());
+    }
+
+    // Ước lượng số byte: chuỗi Java ~2 byte/ký tự cộng phần header của object
+    private static int weigh(BookResponse book) {
+        return 128 + 2 * (length(book.getTitle()) + length(book.getAuthor()) + length(book.getDescription())
+                + length(book.getCategory()) + length(book.getCoverImage()) + length(book.getFileUrl())
+                + length(book.getLanguage()) + length(book.getSubject()));
+    }
+
+    private static int weigh(Page<BookDisplayResponse> page) {
+        int bytes = 128;
+        for (BookDisplayResponse card : page.getContent()) {
+            bytes += 64 + 2 * (length(card.getTitle()) + length(card.getAuthor())
+                    + length(card.getDecription()) + length(card.getCoverImage()) + length(card.getThumbnailUrl()));
+        }
+        return bytes;
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
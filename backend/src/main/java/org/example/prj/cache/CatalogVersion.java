@@ -0,0 +1,77 @@
+package org.example.prj.cache;
+
+import org.example.prj.event.BookChangedEvent;
+import org.example.prj.event.BooksImportedEvent;
+import org.example.prj.event.RatingChangedEvent;
+import org.example.prj.event.RatingsReconciledEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Version cho ETag của danh sách, từng sách và rating từng sách; ETag kèm epoch nên tag của lần chạy trước không khớp
+@Component
+public class CatalogVersion {
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong catalog = new AtomicLong(epoch);
+    // Chỉ chứa sách đã thay đổi từ lúc khởi động
+    private final Map<Long, Long> books = new ConcurrentHashMap<>();
+    private final Map<Long, Long> ratings = new ConcurrentHashMap<>();
+    // Sau khi đối soát lại toàn bộ rating: mọi rating đều có thể đã đổi
+    private final AtomicLong allRatings = new AtomicLong(epoch);
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        catalog.accumulateAndGet(System.currentTimeMillis(), CatalogVersion::next);
+        bump(books, event.getBookId());
+        // Xóa sách thì rating của sách đó cũng không còn
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            bump(ratings, event.getBookId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksImported(BooksImportedEvent event) {
+        catalog.accumulateAndGet(System.currentTimeMillis(), CatalogVersion::next);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        bump(ratings, event.getBookId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingsReconciled(RatingsReconciledEvent event) {
+        allRatings.accumulateAndGet(System.currentTimeMillis(), CatalogVersion::next);
+    }
+
+    private static void bump(Map<Long, Long> versions, Long bookId) {
+        versions.merge(bookId, System.currentTimeMillis(), CatalogVersion::next);
+    }
+
+    // Thời điểm hiện tại, nhưng luôn lớn hơn version cũ kể cả khi sửa nhiều lần trong cùng 1 ms
+    private static long next(long previous, long now) {
+        return Math.max(previous + 1, now);
+    }
+
+    // true: đã set 304 + ETag, controller trả null luôn
+    public boolean catalogNotModified(WebRequest request) {
+        return notModified(request, "c", catalog.get());
+    }
+
+    public boolean bookNotModified(Long bookId, WebRequest request) {
+        return notModified(request, "b", books.getOrDefault(bookId, epoch));
+    }
+
+    public boolean ratingNotModified(Long bookId, WebRequest request) {
+        return notModified(request, "r", Math.max(allRatings.get(), ratings.getOrDefault(bookId, epoch)));
+    }
+
+    private boolean notModified(WebRequest request, String kind, long version) {
+        // Không gửi Last-Modified: If-Modified-Since chỉ chính xác tới giây, hai lần sửa trong cùng một giây sẽ bị trả 304
+        return request.checkNotModified(kind + epoch + "." + version);
+    }
+}
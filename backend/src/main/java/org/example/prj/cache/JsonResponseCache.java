@@ -0,0 +1,147 @@
+package org.example.prj.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.example.prj.DTO.Response.CacheStatsResponse;
+import org.example.prj.entity.Book;
+import org.example.prj.event.BookChangedEvent;
+import org.example.prj.event.BooksImportedEvent;
+import org.example.prj.search.BookSearchIndex;
+import org.example.prj.search.SearchNormalizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+// JSON (và bản gzip) đã encode sẵn của các trang đầu danh sách và các từ khóa tìm nhiều
+@Component
+public class JsonResponseCache {
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+
+    // Chỉ cache các trang đầu (0 .. maxPage), trang sâu hiếm khi được xem lại
+    @Value("${catalog.json-cache.max-page:2}")
+    private int maxPage;
+    @Value("${catalog.json-cache.max-bytes:16777216}")
+    private long maxBytes;
+    // Cùng TTL với CatalogCache
+    @Value("${catalog.cache.expire-minutes:30}")
+    private long expireMinutes;
+
+    private Cache<Key, Encoded> bodies;
+
+    // query == null: trang /book/listbooks
+    private record Key(String query, boolean fuzzy, int page, int size) {
+    }
+
+    private record Encoded(byte[] json, byte[] gzip) {
+    }
+
+    @PostConstruct
+    void init() {
+        bodies = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, Encoded encoded) -> encoded.json().length + encoded.gzip().length)
+                .expireAfterWrite(Duration.ofMinutes(expireMinutes))
+                .recordStats()
+                .build();
+    }
+
+    public ResponseEntity<byte[]> list(int page, int size, String acceptEncoding, Supplier<?> body) {
+        return respond(new Key(null, false, page, size), acceptEncoding, body);
+    }
+
+    public ResponseEntity<byte[]> search(String keyword, boolean fuzzy, int page, int size, String acceptEncoding,
+                                         Supplier<?> body) {
+        // Index chưa dựng xong thì kết quả đến từ query dự phòng: không cache để khỏi giữ lại sau khi index sẵn sàng
+        if (!bookSearchIndex.isReady()) {
+            return toResponse(writeJson(body.get()), false);
+        }
+        return respond(new Key(SearchNormalizer.normalize(keyword), fuzzy, page, size), acceptEncoding, body);
+    }
+
+    private ResponseEntity<byte[]> respond(Key key, String acceptEncoding, Supplier<?> body) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        if (key.page() > maxPage) {
+            return toResponse(writeJson(body.get()), false);
+        }
+        Encoded encoded = bodies.get(key, k -> {
+            byte[] json = writeJson(body.get());
+            return new Encoded(json, gzip(json));
+        });
+        return gzip ? toResponse(encoded.gzip(), true) : toResponse(encoded.json(), false);
+    }
+
+    private static ResponseEntity<byte[]> toResponse(byte[] bytes, boolean gzip) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return builder.body(bytes);
+    }
+
+    private byte[] writeJson(Object body) {
+        try {
+            // Cùng ObjectMapper với message converter của Spring nên JSON giống hệt khi trả ApiResponse
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // Cùng quy tắc với CatalogCache: bỏ mọi trang danh sách, chỉ bỏ các trang tìm kiếm khớp sách trước/sau khi sửa
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        Book book = event.getBook();
+        String newKey = (book == null) ? null : CatalogCache.currentSearchKey(book);
+        String oldKey = event.getPreviousSearchKey();
+        boolean unknownOldKey = oldKey == null && event.getType() != BookChangedEvent.Type.CREATED;
+        bodies.asMap().keySet().removeIf(key -> key.query() == null || unknownOldKey
+                || (oldKey != null && bookSearchIndex.matches(key.query(), key.fuzzy(), oldKey))
+                || (newKey != null && bookSearchIndex.matches(key.query(), key.fuzzy(), newKey)));
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksImported(BooksImportedEvent event) {
+        bodies.invalidateAll();
+    }
+
+    public Map<String, CacheStatsResponse> stats() {
+        Map<String, CacheStatsResponse> stats = new LinkedHashMap<>();
+        stats.put("encodedResponses", CatalogCache.toStatsResponse(bodies, maxBytes));
+        return stats;
+    }
+}
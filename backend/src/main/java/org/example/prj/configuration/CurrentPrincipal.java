@@ -0,0 +1,46 @@
+package org.example.prj.configuration;
+
+import org.example.prj.entity.User;
+import org.example.prj.exception.AppException;
+import org.example.prj.exception.ErrorCode;
+import org.example.prj.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+// User của request hiện tại, đọc từ claim "Id" của JWT thay vì query theo username
+@Component
+@RequestScope
+public class CurrentPrincipal {
+    @Autowired
+    private UserRepository userRepository;
+
+    private Jwt jwt;
+
+    public Long getUserId() {
+        Object id = token().getClaim("Id");
+        if (!(id instanceof Number number)) {
+            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        }
+        return number.longValue();
+    }
+
+    public User getUserReference() {
+        return userRepository.getReferenceById(getUserId());
+    }
+
+    private Jwt token() {
+        if (jwt == null) {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (!(authentication instanceof JwtAuthenticationToken jwtAuthentication)) {
+                throw new AppException(ErrorCode.UNAUTHENTICATED);
+            }
+            jwt = jwtAuthentication.getToken();
+        }
+        return jwt;
+    }
+}
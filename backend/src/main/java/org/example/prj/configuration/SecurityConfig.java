@@ -28,12 +28,22 @@ public class SecurityConfig {
             "/home/login",
             "/home/logout",
             "/book/rating/{bookId}",
+            "/book/ratings",
+            "/book/trending",
+            "/book/top-rated",
             "/book/id/{id}",
 //            "/magic/login",
             "/api/auth/logout",
             "/auth/login",
             "/book/{title}",
             "/book/listbooks",
+            "/book/suggest",
+            "/book/browse",
+            "/book/listbooks/cursor",
+            "/book/listbooks/slice",
+            "/book/{title}/slice",
+            "/book/{title}/cursor",
+            "/book/covers/{name}",
             "/magic/login/**",
 
             // ✅ Thêm whitelist cho Swagger
@@ -2,6 +2,7 @@ package org.example.prj.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.example.prj.DTO.Response.ApiResponse;
+import org.example.prj.DTO.Response.CacheStatsResponse;
 import org.example.prj.DTO.Response.DashboardResponse;
 import org.example.prj.service.AdminService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,6 +10,8 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Map;
+
 
 @Slf4j
 @RestController
@@ -23,4 +26,11 @@ public class AdminController {
                 .result(adminService.getDashboard())
                 .build();
     }
+
+    @GetMapping("/cache/stats")
+    public ApiResponse<Map<String, CacheStatsResponse>> getCacheStats() {
+        return ApiResponse.<Map<String, CacheStatsResponse>>builder()
+                .result(adminService.getCacheStats())
+                .build();
+    }
 }
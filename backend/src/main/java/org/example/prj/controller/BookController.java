@@ -1,15 +1,41 @@
 package org.example.prj.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.example.prj.DTO.Request.BookRequest;
 import org.example.prj.DTO.Response.ApiResponse;
 import org.example.prj.DTO.Response.BookDisplayResponse;
+import org.example.prj.DTO.Response.BookImportResponse;
+import org.example.prj.DTO.Response.BookRatingResponse;
 import org.example.prj.DTO.Response.BookResponse;
+import org.example.prj.DTO.Response.CursorPageResponse;
+import org.example.prj.DTO.Response.FacetedBooksResponse;
+import org.example.prj.DTO.Response.SliceResponse;
+import org.example.prj.DTO.Response.SuggestionResponse;
+import org.example.prj.cache.CatalogVersion;
+import org.example.prj.cache.JsonResponseCache;
+import org.example.prj.service.BookExportService;
+import org.example.prj.service.BookImportService;
 import org.example.prj.service.BookService;
 import org.example.prj.service.CountService;
+import org.example.prj.service.RatingService;
+import org.example.prj.storage.BookFileStorage;
+import org.example.prj.storage.CoverImageStorage;
 import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 
 @RestController
@@ -18,38 +44,148 @@ public class BookController {
 
     private final BookService bookService;
     private final CountService countService;
-    public BookController(BookService bookService, CountService countService) {
+    private final BookImportService bookImportService;
+    private final BookExportService bookExportService;
+    private final CatalogVersion catalogVersion;
+    private final JsonResponseCache jsonResponseCache;
+    private final BookFileStorage bookFileStorage;
+    private final CoverImageStorage coverImageStorage;
+    private final RatingService ratingService;
+    public BookController(BookService bookService, CountService countService, BookImportService bookImportService,
+                          BookExportService bookExportService, CatalogVersion catalogVersion,
+                          JsonResponseCache jsonResponseCache, BookFileStorage bookFileStorage,
+                          CoverImageStorage coverImageStorage, RatingService ratingService) {
         this.bookService = bookService;
         this.countService = countService;
+        this.bookImportService = bookImportService;
+        this.bookExportService = bookExportService;
+        this.catalogVersion = catalogVersion;
+        this.jsonResponseCache = jsonResponseCache;
+        this.bookFileStorage = bookFileStorage;
+        this.coverImageStorage = coverImageStorage;
+        this.ratingService = ratingService;
     }
 
-//    Display book when click book(public)
+//    Display book when click book(public), trả 304 nếu client đã có bản mới nhất
     @GetMapping("/id/{id}")
-    public ApiResponse<BookResponse> getBook(@PathVariable Long id) {
+    public ApiResponse<BookResponse> getBook(@PathVariable Long id, WebRequest request) {
+        if (catalogVersion.bookNotModified(id, request)) {
+            return null;
+        }
         return ApiResponse.<BookResponse>builder()
                 .result(bookService.getBook(id))
                         .build();
     }
 
-//    Get list book(public)
+//    Get list book(public), các trang đầu trả thẳng JSON (gzip nếu client hỗ trợ) đã encode sẵn
     @GetMapping("/listbooks")
-    public ApiResponse<Page<BookDisplayResponse>> getBooks(@RequestParam(defaultValue = "0") Integer page,
-                                                           @RequestParam(defaultValue = "20") Integer size){
-        return ApiResponse.<Page<BookDisplayResponse>>builder()
+    public ResponseEntity<byte[]> getBooks(@RequestParam(defaultValue = "0") Integer page,
+                                           @RequestParam(defaultValue = "20") Integer size,
+                                           @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                           WebRequest request){
+        if (catalogVersion.catalogNotModified(request)) {
+            return null;
+        }
+        return jsonResponseCache.list(page, size, acceptEncoding, () -> ApiResponse.<Page<BookDisplayResponse>>builder()
                 .result(bookService.getListBooks(page,size))
+                .build());
+    }
+
+//    Get list book cho infinite scroll(public), không đếm tổng
+    @GetMapping("/listbooks/slice")
+    public ApiResponse<SliceResponse<BookDisplayResponse>> getBooksSlice(@RequestParam(defaultValue = "0") Integer page,
+                                                                         @RequestParam(defaultValue = "20") Integer size,
+                                                                         @RequestParam(defaultValue = "false") boolean withTotal){
+        return ApiResponse.<SliceResponse<BookDisplayResponse>>builder()
+                .result(bookService.getListBooksSlice(page,size,withTotal))
                 .build();
     }
 
-//    Search book(public)
-    @GetMapping("/{title}")
-    public ApiResponse<Page<BookDisplayResponse>> getBook(@PathVariable String title,
-                                                          @RequestParam(defaultValue = "0") Integer page,
-                                                          @RequestParam(defaultValue = "20") Integer size){
-        return ApiResponse.<Page<BookDisplayResponse>>builder()
-                .result(bookService.getListBooksByTitle(title,page,size))
+//    Search book cho infinite scroll(public)
+    @GetMapping("/{title}/slice")
+    public ApiResponse<SliceResponse<BookDisplayResponse>> getBookSlice(@PathVariable String title,
+                                                                        @RequestParam(defaultValue = "false") boolean fuzzy,
+                                                                        @RequestParam(defaultValue = "0") Integer page,
+                                                                        @RequestParam(defaultValue = "20") Integer size,
+                                                                        @RequestParam(defaultValue = "false") boolean withTotal){
+        return ApiResponse.<SliceResponse<BookDisplayResponse>>builder()
+                .result(bookService.getListBooksByTitleSlice(title,fuzzy,page,size,withTotal))
+                .build();
+    }
+
+//    Get list book theo cursor(public), dùng nextCursor của trang trước
+    @GetMapping("/listbooks/cursor")
+    public ApiResponse<CursorPageResponse<BookDisplayResponse>> getBooksAfter(@RequestParam(required = false) String cursor,
+                                                                              @RequestParam(defaultValue = "20") Integer size){
+        return ApiResponse.<CursorPageResponse<BookDisplayResponse>>builder()
+                .result(bookService.getListBooksAfter(cursor,size))
+                .build();
+    }
+
+//    Search book theo cursor(public)
+    @GetMapping("/{title}/cursor")
+    public ApiResponse<CursorPageResponse<BookDisplayResponse>> getBookAfter(@PathVariable String title,
+                                                                             @RequestParam(required = false) String cursor,
+                                                                             @RequestParam(defaultValue = "20") Integer size){
+        return ApiResponse.<CursorPageResponse<BookDisplayResponse>>builder()
+                .result(bookService.getListBooksByTitleAfter(title,cursor,size))
+                .build();
+    }
+
+//    Lọc sách theo category/language/subject kèm số lượng từng facet(public)
+    @GetMapping("/browse")
+    public ApiResponse<FacetedBooksResponse> browse(@RequestParam(required = false) String q,
+                                                    @RequestParam(required = false) String category,
+                                                    @RequestParam(required = false) String language,
+                                                    @RequestParam(required = false) String subject,
+                                                    @RequestParam(defaultValue = "0") Integer page,
+                                                    @RequestParam(defaultValue = "20") Integer size){
+        Map<String, String> filters = new LinkedHashMap<>();
+        filters.put("category", category);
+        filters.put("language", language);
+        filters.put("subject", subject);
+        return ApiResponse.<FacetedBooksResponse>builder()
+                .result(bookService.browse(q,filters,page,size))
+                .build();
+    }
+
+//    Sách đang được quan tâm(public): lượt xem, thêm vào tủ sách, đánh giá gần đây
+    @GetMapping("/trending")
+    public ApiResponse<List<BookDisplayResponse>> getTrending(@RequestParam(defaultValue = "10") Integer limit){
+        return ApiResponse.<List<BookDisplayResponse>>builder()
+                .result(bookService.getTrending(limit))
                 .build();
     }
 
+//    Sách được đánh giá cao nhất(public), theo trung bình Bayes
+    @GetMapping("/top-rated")
+    public ApiResponse<List<BookDisplayResponse>> getTopRated(@RequestParam(defaultValue = "10") Integer limit){
+        return ApiResponse.<List<BookDisplayResponse>>builder()
+                .result(bookService.getTopRated(limit))
+                .build();
+    }
+
+//    Autocomplete cho ô tìm kiếm(public)
+    @GetMapping("/suggest")
+    public ApiResponse<List<SuggestionResponse>> suggest(@RequestParam String q,
+                                                         @RequestParam(defaultValue = "10") Integer limit){
+        return ApiResponse.<List<SuggestionResponse>>builder()
+                .result(bookService.suggest(q,limit))
+                .build();
+    }
+
+//    Search book(public), fuzzy=true để chấp nhận gõ sai chính tả
+    @GetMapping("/{title}")
+    public ResponseEntity<byte[]> getBook(@PathVariable String title,
+                                          @RequestParam(defaultValue = "false") boolean fuzzy,
+                                          @RequestParam(defaultValue = "0") Integer page,
+                                          @RequestParam(defaultValue = "20") Integer size,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding){
+        return jsonResponseCache.search(title, fuzzy, page, size, acceptEncoding, () -> ApiResponse.<Page<BookDisplayResponse>>builder()
+                .result(bookService.getListBooksByTitle(title,fuzzy,page,size))
+                .build());
+    }
+
 //    Add book(Admin)
     @PostMapping("/addBook")
     public ApiResponse<BookResponse> addBook(@RequestBody BookRequest bookRequest) {
@@ -58,6 +194,28 @@ public class BookController {
                 .build();
     }
 
+//    Import nhiều sách một lần(Admin), body là file CSV có header hoặc NDJSON, gửi thẳng (không multipart)
+    @PostMapping("/import")
+    public ApiResponse<BookImportResponse> importBooks(@RequestParam(defaultValue = "csv") String format,
+                                                       InputStream body) {
+        return ApiResponse.<BookImportResponse>builder()
+                .result(bookImportService.importBooks(body,format))
+                .build();
+    }
+
+//    Export toàn bộ sách ra CSV/NDJSON(Admin), ghi thẳng ra response nên không tốn bộ nhớ
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBooks(@RequestParam(defaultValue = "csv") String format) {
+        StreamingResponseBody body = bookExportService.exportBooks(format);
+        boolean csv = BookExportService.isCsv(format);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"books." + (csv ? "csv" : "ndjson") + "\"")
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
 //    Edit book(Admin)
     @PostMapping("/editBook/{id}")
     public ApiResponse<BookResponse> editBook(@RequestBody BookRequest bookRequest,
@@ -67,6 +225,38 @@ public class BookController {
                 .build();
     }
 
+//    Upload file PDF/EPUB cho sách(Admin), fileUrl của sách sẽ trỏ về /book/files/...
+    @PostMapping("/{id}/file")
+    public ApiResponse<BookResponse> uploadBookFile(@PathVariable Long id,
+                                                    @RequestParam("file") MultipartFile file) {
+        return ApiResponse.<BookResponse>builder()
+                .result(bookService.uploadBookFile(id,file))
+                .build();
+    }
+
+//    Tải file sách(user đã đăng nhập), hỗ trợ Range để đọc từng phần/tải tiếp, gửi bằng sendfile
+    @GetMapping("/files/{name}")
+    public void getBookFile(@PathVariable String name, HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        bookFileStorage.send(name, request, response);
+    }
+
+//    Upload ảnh bìa(Admin), tạo sẵn thumbnail cho trang danh sách
+    @PostMapping("/{id}/cover")
+    public ApiResponse<BookResponse> uploadCover(@PathVariable Long id,
+                                                 @RequestParam("file") MultipartFile file) {
+        return ApiResponse.<BookResponse>builder()
+                .result(bookService.uploadCover(id,file))
+                .build();
+    }
+
+//    Ảnh bìa và thumbnail(public), cache lâu dài vì tên file là hash nội dung
+    @GetMapping("/covers/{name}")
+    public void getCover(@PathVariable String name, HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        coverImageStorage.send(name, request, response);
+    }
+
 //    Delete book(Admin)
     @DeleteMapping("/delete/{id}")
     public void deleteBook(@PathVariable Long id) {
@@ -75,12 +265,23 @@ public class BookController {
 
 //    Display rating(public)
     @GetMapping("/rating/{bookId}")
-    public ApiResponse<Double> displayRating(@PathVariable Long bookId){
+    public ApiResponse<Double> displayRating(@PathVariable Long bookId, WebRequest request){
+        if (catalogVersion.ratingNotModified(bookId, request)) {
+            return null;
+        }
         return ApiResponse.<Double>builder()
                 .result(bookService.displayRating(bookId))
                 .build();
     }
 
+//    Rating của nhiều sách một lần(public), vd /book/ratings?ids=1,2,3 cho cả trang danh sách
+    @GetMapping("/ratings")
+    public ApiResponse<List<BookRatingResponse>> getRatings(@RequestParam List<Long> ids){
+        return ApiResponse.<List<BookRatingResponse>>builder()
+                .result(ratingService.getRatings(ids))
+                .build();
+    }
+
 //    Count view(Admin)
     @PostMapping("/views")
     public void countViews(){
@@ -2,11 +2,14 @@ package org.example.prj.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.prj.DTO.Request.BookshelfBulkRequest;
 import org.example.prj.DTO.Request.PointRequest;
 import org.example.prj.DTO.Request.TilteFolder;
 import org.example.prj.DTO.Response.ApiResponse;
 import org.example.prj.DTO.Response.BookDisplayResponse;
 import org.example.prj.DTO.Response.BookResponse;
+import org.example.prj.DTO.Response.BookshelfBulkResponse;
+import org.example.prj.DTO.Response.CursorPageResponse;
 import org.example.prj.DTO.Response.ListUserResponse;
 import org.example.prj.repository.UserRepository;
 import org.example.prj.service.UserService;
@@ -40,6 +43,15 @@ public class UserCotroller {
                 .build();
     }
 
+    //  List User theo cursor, dùng nextCursor của trang trước
+    @GetMapping("/listUser/cursor")
+    public ApiResponse<CursorPageResponse<ListUserResponse>> getUsersAfter(@RequestParam(required = false) String cursor,
+                                                                          @RequestParam(defaultValue = "20") Integer size) {
+        return ApiResponse.<CursorPageResponse<ListUserResponse>>builder()
+                .result(userService.getListUsersAfter(cursor,size))
+                .build();
+    }
+
 //    Book review
     @PostMapping("/reviewBook/{bookId}")
     public ApiResponse<String> addReviewBook(@PathVariable("bookId") Long bookId,@RequestBody PointRequest pointRequest) {
@@ -116,6 +128,16 @@ public class UserCotroller {
                 .build();
     }
 
+//    Display favourite book theo cursor(user)
+    @GetMapping("/fb/{listId}/cursor")
+    public ApiResponse<CursorPageResponse<BookDisplayResponse>> getFBAfter(@PathVariable("listId") Long id,
+                                                                        @RequestParam(required = false) String cursor,
+                                                                        @RequestParam(defaultValue = "20") Integer size) {
+        return ApiResponse.<CursorPageResponse<BookDisplayResponse>>builder()
+                .result(userService.getFBAfter(id,cursor,size))
+                .build();
+    }
+
 //    Delete favourite book
     @DeleteMapping("/fb/{listId}/{id}")
     public ApiResponse<String> deleteFB(@PathVariable("id") Long id,
@@ -133,6 +155,14 @@ public class UserCotroller {
                 .build();
     }
 
+//    Add list book by status(user), mỗi phần tử trả về kết quả riêng
+    @PostMapping("/bookshelf/bulk")
+    public ApiResponse<BookshelfBulkResponse> addBooksByStatus(@RequestBody BookshelfBulkRequest request) {
+        return ApiResponse.<BookshelfBulkResponse>builder()
+                .result(userService.addBooksByStatus(request))
+                .build();
+    }
+
 //    Delete book for statusBook
     @DeleteMapping("/deleteBookByStatus/{bookId}")
     public ApiResponse<String> deleteBookByStatus(@PathVariable Long bookId){
@@ -150,4 +180,14 @@ public class UserCotroller {
                 .result(userService.getBooksDependOnStatus(status,page,size))
                 .build();
     }
+
+//    Display status Listbook theo cursor(user)
+    @GetMapping("/books/{status}/cursor")
+    public ApiResponse<CursorPageResponse<BookResponse>> getBooksDependOnStatusAfter(@PathVariable("status") String status,
+                                                                                     @RequestParam(required = false) String cursor,
+                                                                                     @RequestParam(defaultValue = "20") Integer size) {
+        return ApiResponse.<CursorPageResponse<BookResponse>>builder()
+                .result(userService.getBooksDependOnStatusAfter(status,cursor,size))
+                .build();
+    }
 }
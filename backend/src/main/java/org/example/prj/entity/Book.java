@@ -2,6 +2,7 @@ package org.example.prj.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -23,10 +24,27 @@ public class Book {
     private String description;
     private String category;
     private String coverImage;
+    // URL thumbnail của ảnh bìa (/book/covers/...), null cho đến khi tạo xong
+    private String coverThumbnail;
     private String fileUrl;
     private LocalDateTime createdAt;
     private String language;
     private String subject;
+    // title + author + category viết thường, bỏ dấu (SearchNormalizer.searchKey), tính khi thêm/sửa sách
+    // Có FULLTEXT index (SearchKeyFullTextIndex) cho query dự phòng khi index trong bộ nhớ chưa sẵn sàng
+    @Column(length = 700)
+    private String searchKey;
+    // SearchNormalizer.fingerprint(title, author); unique để DB chặn sách trùng kể cả khi ghi đồng thời
+    @Column(length = 64, unique = true)
+    private String fingerprint;
+    // Tổng điểm và số lượt đánh giá, chỉ đổi bằng UPDATE cộng dồn (BookRepository.addRating)
+    // nên updatable = false: lưu cả entity khi sửa sách không ghi đè giá trị mới hơn
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private double ratingSum;
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private long ratingCount;
 
     @OneToMany(mappedBy = "book",cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Review> reviews;
@@ -1,20 +0,0 @@
-package org.example.prj.entity;
-
-import jakarta.persistence.*;
-import lombok.*;
-
-@Getter
-@Setter
-@Builder
-@AllArgsConstructor
-@NoArgsConstructor
-
-@Entity
-@Table(name = "book_rating_distribution")
-public class BookRating {
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private String ratingRange;
-
-    private Long totalBooks;
-}
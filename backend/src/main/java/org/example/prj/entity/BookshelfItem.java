@@ -12,7 +12,9 @@ import org.example.prj.constant.StatusBook;
 @Builder
 @Table(
         name = "bookshelf_item",
-        uniqueConstraints = @UniqueConstraint(columnNames = {"bookshelf_id", "book_id"})
+        uniqueConstraints = @UniqueConstraint(columnNames = {"bookshelf_id", "book_id"}),
+        // Lọc sách theo trạng thái và phân trang theo id đi thẳng trên index
+        indexes = @Index(name = "idx_bookshelf_item_shelf_status_id", columnList = "bookshelf_id, status, id")
 )
 public class BookshelfItem {
     @Id
@@ -2,6 +2,7 @@ package org.example.prj.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,6 +19,10 @@ public class FavouriteBooks {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     private String title;
+    // Số sách trong thư mục, chỉ đổi bằng UPDATE cộng dồn (FavouriteRepository.addBookCount)
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private long bookCount;
 
     @ManyToOne
     @JoinColumn(name = "user_id", nullable = false)
@@ -27,7 +32,8 @@ public class FavouriteBooks {
     @JoinTable(
             name = "favourite_books_mapping",
             joinColumns = @JoinColumn(name = "favourite_books_id"),
-            inverseJoinColumns = @JoinColumn(name = "book_id")
+            inverseJoinColumns = @JoinColumn(name = "book_id"),
+            indexes = @Index(name = "idx_favourite_mapping_folder_book", columnList = "favourite_books_id, book_id")
     )
     private List<Book> books = new ArrayList<>();
 }
@@ -12,6 +12,8 @@ import java.util.List;
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
+// Đăng nhập/đăng ký vẫn tìm user theo username
+@Table(indexes = @Index(name = "idx_user_username", columnList = "username"))
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,26 @@
+package org.example.prj.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+
+// Số sách theo từng trạng thái trong bookshelf của user, cập nhật cùng transaction với bookshelf_item
+@Getter
+@Setter
+@Entity
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserShelfStats {
+    @Id
+    private Long userId;
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private long wantCount;
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private long readingCount;
+    @ColumnDefault("0")
+    @Column(nullable = false, updatable = false)
+    private long completedCount;
+}
@@ -0,0 +1,31 @@
+package org.example.prj.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.example.prj.entity.Book;
+
+// BookService phát khi catalog thay đổi, index/cache xử lý sau commit
+@Getter
+@AllArgsConstructor
+public class BookChangedEvent {
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private final Type type;
+    private final Long bookId;
+    // null khi sách đã bị xóa
+    private final Book book;
+    // search_key trước khi sửa/xóa, để cache biết những truy vấn nào từng trả về sách này
+    private final String previousSearchKey;
+
+    public static BookChangedEvent created(Book book) {
+        return new BookChangedEvent(Type.CREATED, book.getId(), book, null);
+    }
+
+    public static BookChangedEvent updated(Book book, String previousSearchKey) {
+        return new BookChangedEvent(Type.UPDATED, book.getId(), book, previousSearchKey);
+    }
+
+    public static BookChangedEvent deleted(Long bookId, String previousSearchKey) {
+        return new BookChangedEvent(Type.DELETED, bookId, null, previousSearchKey);
+    }
+}
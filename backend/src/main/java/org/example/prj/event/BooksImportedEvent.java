@@ -0,0 +1,11 @@
+package org.example.prj.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Import hàng loạt bằng JDBC không phát BookChangedEvent từng sách: các cấu trúc trong bộ nhớ dựng lại
+@Getter
+@AllArgsConstructor
+public class BooksImportedEvent {
+    private final int imported;
+}
@@ -0,0 +1,12 @@
+package org.example.prj.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Sách được thêm vào (delta = 1) hoặc bỏ khỏi (delta = -1) kệ sách của user
+@Getter
+@AllArgsConstructor
+public class BookshelfChangedEvent {
+    private final Long bookId;
+    private final int delta;
+}
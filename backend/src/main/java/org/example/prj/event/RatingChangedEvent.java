@@ -0,0 +1,15 @@
+package org.example.prj.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Tổng điểm đánh giá của sách thay đổi, kèm giá trị trước và sau
+@Getter
+@AllArgsConstructor
+public class RatingChangedEvent {
+    private final Long bookId;
+    private final double previousSum;
+    private final long previousCount;
+    private final double sum;
+    private final long count;
+}
@@ -0,0 +1,5 @@
+package org.example.prj.event;
+
+// Đã tính lại toàn bộ rating từ bảng review: dữ liệu rating trong bộ nhớ dựng lại
+public class RatingsReconciledEvent {
+}
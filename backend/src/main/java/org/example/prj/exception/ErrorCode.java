@@ -20,7 +20,18 @@ public enum ErrorCode {
     LIST_NOT_FOUND(1011, "List not found", HttpStatus.NOT_FOUND),
     ACCOUNT_NOT_ACTIVE(1012, "Account not active", HttpStatus.BAD_REQUEST),
     BOOK_EXISTED(1013, "Book already existed", HttpStatus.CONFLICT),
-    FOLDER_EXISTED(1014, "Folder already existed", HttpStatus.BAD_REQUEST)
+    FOLDER_EXISTED(1014, "Folder already existed", HttpStatus.BAD_REQUEST),
+    INVALID_CURSOR(1015, "Invalid cursor", HttpStatus.BAD_REQUEST),
+    UNSUPPORTED_FORMAT(1016, "Unsupported format, use csv or ndjson", HttpStatus.BAD_REQUEST),
+    INVALID_IMPORT_FILE(1017, "CSV header must contain title and author columns", HttpStatus.BAD_REQUEST),
+    FILE_NOT_FOUND(1018, "File not found", HttpStatus.NOT_FOUND),
+    UNSUPPORTED_FILE_TYPE(1019, "Unsupported file type", HttpStatus.BAD_REQUEST),
+    FILE_UPLOAD_FAILED(1020, "Could not store file", HttpStatus.INTERNAL_SERVER_ERROR),
+    FILE_TOO_LARGE(1021, "File is too large", HttpStatus.PAYLOAD_TOO_LARGE),
+    TOO_MANY_IDS(1022, "Too many ids in one request", HttpStatus.BAD_REQUEST),
+    TOO_MANY_ITEMS(1023, "Too many items in one request", HttpStatus.BAD_REQUEST),
+    INVALID_PAGE_SIZE(1024, "Invalid page size", HttpStatus.BAD_REQUEST),
+    INVALID_PAGE(1025, "Invalid page number", HttpStatus.BAD_REQUEST)
 //    INVALID_DOB(1008, "Your age must be at least {min}", HttpStatus.BAD_REQUEST),
     ;
 
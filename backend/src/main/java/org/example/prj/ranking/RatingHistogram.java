@@ -0,0 +1,89 @@
+package org.example.prj.ranking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.prj.DTO.Projection.BookRatingView;
+import org.example.prj.DTO.Response.RatingBucketResponse;
+import org.example.prj.event.RatingChangedEvent;
+import org.example.prj.event.RatingsReconciledEvent;
+import org.example.prj.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+// Số sách theo từng khoảng điểm trung bình ([0,1) .. [4,5]) cho dashboard admin
+@Slf4j
+@Component
+public class RatingHistogram {
+    public static final int BUCKETS = 5;
+    // Sai số khi cộng/trừ số thực: 3.9999999 vẫn tính là 4
+    private static final double EPSILON = 1e-9;
+
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private volatile AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    // Sách chưa có đánh giá không thuộc bucket nào
+    static int bucketOf(double sum, long count) {
+        if (count <= 0) {
+            return -1;
+        }
+        int bucket = (int) Math.floor(sum / count + EPSILON);
+        return Math.max(0, Math.min(BUCKETS - 1, bucket));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        int previous = bucketOf(event.getPreviousSum(), event.getPreviousCount());
+        int current = bucketOf(event.getSum(), event.getCount());
+        if (previous == current) {
+            return;
+        }
+        AtomicLongArray target = counts;
+        if (previous >= 0) {
+            target.decrementAndGet(previous);
+        }
+        if (current >= 0) {
+            target.incrementAndGet(current);
+        }
+    }
+
+    // Thay đổi xảy ra trong lúc đang quét có thể lệch một chút, lần đối soát sau sẽ sửa
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onRatingsReconciled(RatingsReconciledEvent event) {
+        long start = System.currentTimeMillis();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        AtomicLongArray rebuilt = readOnly.execute(status -> {
+            AtomicLongArray fresh = new AtomicLongArray(BUCKETS);
+            try (Stream<BookRatingView> ratings = bookRepository.streamAllRatings()) {
+                ratings.forEach(rating -> fresh.incrementAndGet(
+                        bucketOf(rating.getRatingSum(), rating.getRatingCount())));
+            }
+            return fresh;
+        });
+        counts = rebuilt;
+        log.info("Rating histogram rebuilt in {} ms", System.currentTimeMillis() - start);
+    }
+
+    public List<RatingBucketResponse> snapshot() {
+        AtomicLongArray current = counts;
+        List<RatingBucketResponse> buckets = new ArrayList<>(BUCKETS);
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.add(RatingBucketResponse.builder()
+                    .ratingRange(i + "-" + (i + 1))
+                    .totalBooks(Math.max(0, current.get(i)))
+                    .build());
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.prj.ranking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// k phần tử điểm cao nhất bằng min-heap kích thước k: O(n log k), không sắp xếp toàn bộ
+final class TopK {
+    private TopK() {
+    }
+
+    // Điểm bằng nhau thì id nhỏ hơn đứng trước, để thứ tự ổn định giữa các lần làm mới
+    private static final Comparator<Map.Entry<Long, Double>> ORDER =
+            Map.Entry.<Long, Double>comparingByValue()
+                    .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed());
+
+    static List<Long> of(Iterable<Map.Entry<Long, Double>> scores, int k) {
+        if (k <= 0) {
+            return List.of();
+        }
+        PriorityQueue<Map.Entry<Long, Double>> heap = new PriorityQueue<>(k + 1, ORDER);
+        for (Map.Entry<Long, Double> score : scores) {
+            if (heap.size() < k) {
+                heap.add(Map.entry(score.getKey(), score.getValue()));
+            } else if (ORDER.compare(score, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(Map.entry(score.getKey(), score.getValue()));
+            }
+        }
+        List<Long> ids = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            ids.add(heap.poll().getKey());
+        }
+        Collections.reverse(ids);
+        return List.copyOf(ids);
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.prj.ranking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.prj.DTO.Projection.BookRatingView;
+import org.example.prj.event.RatingChangedEvent;
+import org.example.prj.event.RatingsReconciledEvent;
+import org.example.prj.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Top sách đánh giá cao theo trung bình Bayes, tính lại định kỳ từ (sum, count) giữ trong bộ nhớ
+@Slf4j
+@Component
+public class TopRatedRanking {
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Số phiếu "ảo" mang điểm trung bình chung cộng vào mỗi sách
+    @Value("${ranking.top-rated.prior-votes:10}")
+    private double priorVotes;
+    @Value("${ranking.top-size:100}")
+    private int topSize;
+
+    private record Aggregate(double sum, long count) {
+    }
+
+    private volatile Map<Long, Aggregate> ratings = new ConcurrentHashMap<>();
+    private volatile List<Long> top = List.of();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        if (event.getCount() > 0) {
+            ratings.put(event.getBookId(), new Aggregate(event.getSum(), event.getCount()));
+        } else {
+            ratings.remove(event.getBookId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onRatingsReconciled(RatingsReconciledEvent event) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        ratings = readOnly.execute(status -> {
+            Map<Long, Aggregate> loaded = new ConcurrentHashMap<>();
+            try (Stream<BookRatingView> rows = bookRepository.streamAllRatings()) {
+                rows.forEach(row -> loaded.put(row.getId(), new Aggregate(row.getRatingSum(), row.getRatingCount())));
+            }
+            return loaded;
+        });
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${ranking.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        Map<Long, Aggregate> current = ratings;
+        double totalSum = 0;
+        long totalCount = 0;
+        for (Aggregate aggregate : current.values()) {
+            totalSum += aggregate.sum();
+            totalCount += aggregate.count();
+        }
+        double mean = totalCount == 0 ? 0 : totalSum / totalCount;
+        double prior = priorVotes * mean;
+        top = TopK.of(() -> current.entrySet().stream()
+                .map(e -> Map.entry(e.getKey(), (prior + e.getValue().sum()) / (priorVotes + e.getValue().count())))
+                .iterator(), topSize);
+    }
+
+    public List<Long> top(int limit) {
+        List<Long> current = top;
+        return current.subList(0, Math.min(Math.max(limit, 0), current.size()));
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.prj.ranking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.prj.event.BookChangedEvent;
+import org.example.prj.event.BookshelfChangedEvent;
+import org.example.prj.event.RatingChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Sách đang hot: lượt xem, thêm vào kệ, đánh giá có trọng số và giảm dần theo half-life (forward decay)
+@Slf4j
+@Component
+public class TrendingRanking {
+    // Dời mốc khi hệ số lớn hơn 2^RESCALE_AFTER_HALF_LIVES để không tràn double
+    private static final int RESCALE_AFTER_HALF_LIVES = 64;
+    // Điểm (đã tính suy giảm) nhỏ hơn ngưỡng này thì bỏ khỏi bộ nhớ khi làm mới
+    private static final double MIN_SCORE = 0.01;
+
+    @Value("${ranking.trending.half-life-hours:24}")
+    private double halfLifeHours;
+    @Value("${ranking.trending.view-weight:1}")
+    private double viewWeight;
+    @Value("${ranking.trending.shelf-weight:3}")
+    private double shelfWeight;
+    @Value("${ranking.trending.review-weight:2}")
+    private double reviewWeight;
+    @Value("${ranking.top-size:100}")
+    private int topSize;
+    // Giới hạn số sách giữ điểm trong bộ nhớ; đầy thì sách mới phải chờ lần làm mới dọn bớt
+    @Value("${ranking.trending.max-books:100000}")
+    private int maxBooks;
+
+    private final Map<Long, Double> scores = new ConcurrentHashMap<>();
+    private volatile long landmark = System.currentTimeMillis();
+    private volatile List<Long> top = List.of();
+    // Cộng điểm giữ read lock, dời mốc (nhân lại mọi điểm) giữ write lock để không lẫn điểm theo hai mốc
+    private final ReadWriteLock rescaleLock = new ReentrantReadWriteLock();
+
+    public void recordView(Long bookId) {
+        add(bookId, viewWeight);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookshelfChanged(BookshelfChangedEvent event) {
+        if (event.getDelta() > 0) {
+            add(event.getBookId(), shelfWeight);
+        }
+    }
+
+    // Đánh giá mới hoặc đổi điểm; xóa đánh giá thì không tính
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        if (event.getCount() >= event.getPreviousCount() && event.getCount() > 0) {
+            add(event.getBookId(), reviewWeight);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            scores.remove(event.getBookId());
+        }
+    }
+
+    private void add(Long bookId, double weight) {
+        if (scores.size() >= maxBooks && !scores.containsKey(bookId)) {
+            return;
+        }
+        rescaleLock.readLock().lock();
+        try {
+            scores.merge(bookId, weight * Math.pow(2, halfLives(System.currentTimeMillis() - landmark)), Double::sum);
+        } finally {
+            rescaleLock.readLock().unlock();
+        }
+    }
+
+    private double halfLives(long millis) {
+        return millis / (halfLifeHours * 3_600_000);
+    }
+
+    @Scheduled(fixedDelayString = "${ranking.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        long now = System.currentTimeMillis();
+        double elapsed = halfLives(now - landmark);
+        if (elapsed > RESCALE_AFTER_HALF_LIVES) {
+            // Nhân mọi điểm với cùng một hệ số nên thứ tự không đổi
+            double factor = Math.pow(2, -elapsed);
+            rescaleLock.writeLock().lock();
+            try {
+                landmark = now;
+                scores.replaceAll((id, score) -> score * factor);
+            } finally {
+                rescaleLock.writeLock().unlock();
+            }
+            elapsed = 0;
+        }
+        // Điểm thực tại thời điểm now = score * 2^-elapsed
+        double threshold = MIN_SCORE * Math.pow(2, elapsed);
+        scores.values().removeIf(score -> score < threshold);
+        top = TopK.of(scores.entrySet(), topSize);
+    }
+
+    public List<Long> top(int limit) {
+        List<Long> current = top;
+        return current.subList(0, Math.min(Math.max(limit, 0), current.size()));
+    }
+}
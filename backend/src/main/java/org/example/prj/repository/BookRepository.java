@@ -1,30 +1,177 @@
 package org.example.prj.repository;
 
+import jakarta.persistence.QueryHint;
+import jakarta.transaction.Transactional;
+import org.example.prj.DTO.Projection.BookCoverView;
+import org.example.prj.DTO.Projection.BookFacetView;
+import org.example.prj.DTO.Projection.BookRatingView;
+import org.example.prj.DTO.Projection.BookSearchView;
+import org.example.prj.DTO.Response.BookDisplayResponse;
+import org.example.prj.DTO.Response.BookResponse;
 import org.example.prj.entity.Book;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
 
     Optional<Book> getBookById(Long id);
 
-    // ❌ XÓA query cũ này đi (hoặc comment lại)
-    // @Query("SELECT b FROM Book b WHERE LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))")
-    // Page<Book> findByTitle(@Param("title") String title, Pageable pageable);
+    // Các trang danh sách chỉ select đúng các cột của card, mô tả bị cắt ngắn,
+    // không load cả cột TEXT description và không tạo entity được quản lý
+    int CARD_DESCRIPTION_LENGTH = 300;
+    String CARD = "new org.example.prj.DTO.Response.BookDisplayResponse(b.id, b.title, b.author, " +
+            "SUBSTRING(b.description, 1, " + CARD_DESCRIPTION_LENGTH + "), b.coverImage, b.coverThumbnail)";
+
+    String DETAIL = "new org.example.prj.DTO.Response.BookResponse(b.id, b.title, b.author, b.description, " +
+            "b.category, b.coverImage, b.fileUrl, b.createdAt, b.language, b.subject)";
+
+    @Query("SELECT " + DETAIL + " FROM Book b WHERE b.id = :id")
+    Optional<BookResponse> findDetailById(@Param("id") Long id);
+
+    // Export: fetch size Integer.MIN_VALUE bật chế độ streaming của MySQL Connector/J (đọc từng dòng,
+    // không nạp cả result set), DTO không phải entity nên persistence context không phình ra.
+    // Phải gọi trong transaction và đóng Stream sau khi dùng
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT " + DETAIL + " FROM Book b ORDER BY b.id")
+    Stream<BookResponse> streamAllDetails();
+
+    @Query(value = "SELECT " + CARD + " FROM Book b ORDER BY b.id",
+            countQuery = "SELECT COUNT(b) FROM Book b")
+    Page<BookDisplayResponse> findCards(Pageable pageable);
+
+    @Query("SELECT b.id FROM Book b WHERE b.id IN :ids")
+    List<Long> findIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT " + CARD + " FROM Book b WHERE b.id IN :ids")
+    List<BookDisplayResponse> findCardsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Tìm trên cột search_key (đã viết thường, bỏ dấu) bằng FULLTEXT index, mỗi token khớp đầu một từ
+    // query phải được tạo bằng SearchNormalizer.fullTextQuery
+    @Query(value = "SELECT " + CARD + " FROM Book b WHERE match_against(b.searchKey, :query) > 0 ORDER BY b.id",
+            countQuery = "SELECT COUNT(b) FROM Book b WHERE match_against(b.searchKey, :query) > 0")
+    Page<BookDisplayResponse> findCardsBySearchKey(@Param("query") String query, Pageable pageable);
+
+    // Trả về Slice: Spring Data lấy size + 1 dòng và không chạy câu COUNT
+    @Query("SELECT " + CARD + " FROM Book b ORDER BY b.id")
+    Slice<BookDisplayResponse> findCardSlice(Pageable pageable);
+
+    @Query("SELECT " + CARD + " FROM Book b WHERE match_against(b.searchKey, :query) > 0 ORDER BY b.id")
+    Slice<BookDisplayResponse> findCardSliceBySearchKey(@Param("query") String query, Pageable pageable);
+
+    // Phân trang keyset: WHERE id > lastId ORDER BY id LIMIT n, không cần OFFSET và COUNT
+    @Query("SELECT " + CARD + " FROM Book b WHERE b.id > :lastId ORDER BY b.id")
+    List<BookDisplayResponse> findCardsAfter(@Param("lastId") Long lastId, Pageable pageable);
+
+    @Query("SELECT " + CARD + " FROM Book b WHERE match_against(b.searchKey, :query) > 0 " +
+            "AND b.id > :lastId ORDER BY b.id")
+    List<BookDisplayResponse> findCardsBySearchKeyAfter(@Param("query") String query,
+                                                        @Param("lastId") Long lastId, Pageable pageable);
+
+    // Dùng để dựng BookSearchIndex lúc khởi động
+    @Query("SELECT b.id AS id, b.title AS title, b.author AS author, b.category AS category, " +
+            "b.searchKey AS searchKey FROM Book b")
+    List<BookSearchView> findAllSearchViews();
+
+    // Dùng để dựng FacetIndex lúc khởi động
+    @Query("SELECT b.id AS id, b.category AS category, b.language AS language, b.subject AS subject FROM Book b")
+    List<BookFacetView> findAllFacetViews();
+
+    // search_key hiện tại của sách, để biết cần xóa cache nào trước khi xóa sách
+    @Query("SELECT b.searchKey FROM Book b WHERE b.id = :id")
+    Optional<String> findSearchKeyById(@Param("id") Long id);
+
+    // Các sách cũ chưa có search_key
+    @Query("SELECT b.id AS id, b.title AS title, b.author AS author, b.category AS category, " +
+            "b.searchKey AS searchKey FROM Book b WHERE b.searchKey IS NULL")
+    List<BookSearchView> findSearchViewsWithoutSearchKey(Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Book b SET b.searchKey = :searchKey WHERE b.id = :id")
+    void updateSearchKey(@Param("id") Long id, @Param("searchKey") String searchKey);
+
+    boolean existsByFingerprint(String fingerprint);
+    boolean existsByFingerprintAndIdNot(String fingerprint, Long id);
+
+    @Query("SELECT b.id FROM Book b WHERE b.fingerprint = :fingerprint")
+    Optional<Long> findIdByFingerprint(@Param("fingerprint") String fingerprint);
+
+    // Dựng Bloom filter chống trùng lúc khởi động, đọc streaming như export
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT b.fingerprint FROM Book b WHERE b.fingerprint IS NOT NULL")
+    Stream<String> streamAllFingerprints();
+
+    // Sách cũ chưa có fingerprint, duyệt theo id vì những dòng bị trùng sẽ vẫn còn NULL
+    @Query("SELECT b.id AS id, b.title AS title, b.author AS author, b.category AS category, " +
+            "b.searchKey AS searchKey FROM Book b WHERE b.fingerprint IS NULL AND b.id > :lastId ORDER BY b.id")
+    List<BookSearchView> findSearchViewsWithoutFingerprint(@Param("lastId") Long lastId, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Book b SET b.fingerprint = :fingerprint WHERE b.id = :id")
+    void updateFingerprint(@Param("id") Long id, @Param("fingerprint") String fingerprint);
+
+    // Sách có ảnh bìa nhưng chưa có thumbnail (sách cũ, sách import), duyệt theo id
+    @Query("SELECT b.id AS id, b.coverImage AS coverImage FROM Book b WHERE b.coverThumbnail IS NULL " +
+            "AND b.coverImage IS NOT NULL AND b.coverImage <> '' AND b.id > :lastId ORDER BY b.id")
+    List<BookCoverView> findCoversWithoutThumbnail(@Param("lastId") Long lastId, Pageable pageable);
+
+    // Ghi thumbnail chỉ khi ảnh bìa vẫn là ảnh đã dùng để tạo nó
+    @Modifying
+    @Transactional
+    @Query("UPDATE Book b SET b.coverThumbnail = :coverThumbnail WHERE b.id = :id AND b.coverImage = :coverImage")
+    int updateCoverThumbnail(@Param("id") Long id, @Param("coverImage") String coverImage,
+                             @Param("coverThumbnail") String coverThumbnail);
+
+    // Cộng dồn ngay trong DB (không đọc-sửa-ghi) nên các lượt đánh giá đồng thời không ghi đè nhau
+    @Modifying
+    @Transactional
+    @Query("UPDATE Book b SET b.ratingSum = b.ratingSum + :sum, b.ratingCount = b.ratingCount + :count WHERE b.id = :id")
+    int addRating(@Param("id") Long id, @Param("sum") double sum, @Param("count") long count);
+
+    @Query("SELECT b.id AS id, b.ratingSum AS ratingSum, b.ratingCount AS ratingCount FROM Book b WHERE b.id = :id")
+    Optional<BookRatingView> findRatingById(@Param("id") Long id);
+
+    @Query("SELECT b.id AS id, b.ratingSum AS ratingSum, b.ratingCount AS ratingCount FROM Book b WHERE b.id IN :ids")
+    List<BookRatingView> findRatingsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Dựng lại histogram rating: đọc streaming mọi sách đã có đánh giá
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT b.id AS id, b.ratingSum AS ratingSum, b.ratingCount AS ratingCount FROM Book b WHERE b.ratingCount > 0")
+    Stream<BookRatingView> streamAllRatings();
 
-    // ✅ THÊM query mới này - Tìm từ 3 trường
-    @Query("SELECT b FROM Book b WHERE " +
-            "LOWER(b.title) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(b.author) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-            "LOWER(b.category) LIKE LOWER(CONCAT('%', :keyword, '%'))")
-    Page<Book> findByTitle(@Param("keyword") String keyword, Pageable pageable);
+    @Query("SELECT COALESCE(MAX(b.id), 0) FROM Book b")
+    Long findMaxId();
 
-    boolean existsByTitle(String title);
-    boolean existsByAuthor(String author);
-}
\ No newline at end of file
+    // Tính lại rating_sum/rating_count từ bảng review cho các sách có id trong (fromId, toId]
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE book SET " +
+            "rating_sum = COALESCE((SELECT SUM(r.rating) FROM review r WHERE r.book_id = book.id), 0), " +
+            "rating_count = (SELECT COUNT(*) FROM review r WHERE r.book_id = book.id) " +
+            "WHERE id > :fromId AND id <= :toId", nativeQuery = true)
+    int reconcileRatings(@Param("fromId") Long fromId, @Param("toId") Long toId);
+}
@@ -1,8 +1,58 @@
 package org.example.prj.repository;
 
-import org.example.prj.DTO.Response.ApiResponse;
+import jakarta.transaction.Transactional;
+import org.example.prj.DTO.Projection.BookCountView;
+import org.example.prj.DTO.Projection.BookStatusView;
+import org.example.prj.DTO.Projection.ShelfBookView;
+import org.example.prj.DTO.Response.BookResponse;
+import org.example.prj.constant.StatusBook;
 import org.example.prj.entity.BookshelfItem;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface BookshelfItemRepository extends JpaRepository<BookshelfItem,Long> {
+
+    // Số lượt thêm vào kệ của từng sách (độ phổ biến)
+    @Query("SELECT bi.book.id AS bookId, COUNT(bi) AS total FROM BookshelfItem bi GROUP BY bi.book.id")
+    List<BookCountView> countShelvesByBook();
+
+    @Query("SELECT i.status FROM BookshelfItem i WHERE i.bookshelf.id = :shelfId AND i.book.id = :bookId")
+    Optional<StatusBook> findStatus(@Param("shelfId") Long shelfId, @Param("bookId") Long bookId);
+
+    // Trạng thái hiện tại của nhiều sách trong kệ bằng 1 query IN (...)
+    @Query("SELECT i.book.id AS bookId, i.status AS status FROM BookshelfItem i " +
+            "WHERE i.bookshelf.id = :shelfId AND i.book.id IN :bookIds")
+    List<BookStatusView> findStatuses(@Param("shelfId") Long shelfId, @Param("bookIds") Collection<Long> bookIds);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE BookshelfItem i SET i.status = :status WHERE i.bookshelf.id = :shelfId AND i.book.id = :bookId")
+    int updateStatus(@Param("shelfId") Long shelfId, @Param("bookId") Long bookId, @Param("status") StatusBook status);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM BookshelfItem i WHERE i.bookshelf.id = :shelfId AND i.book.id = :bookId")
+    int deleteItem(@Param("shelfId") Long shelfId, @Param("bookId") Long bookId);
+
+    // Sách theo trạng thái trong kệ của user, lọc và phân trang trong DB (index bookshelf_id, status, id)
+    @Query("SELECT new org.example.prj.DTO.Response.BookResponse(b.id, b.title, b.author, b.description, b.coverImage) " +
+            "FROM BookshelfItem i JOIN i.book b " +
+            "WHERE i.bookshelf.user.id = :userId AND i.status = :status ORDER BY i.id")
+    List<BookResponse> findBooksByStatus(@Param("userId") Long userId, @Param("status") StatusBook status,
+                                         Pageable pageable);
+
+    // Phân trang keyset theo id của bookshelf_item
+    @Query("SELECT i.id AS itemId, b.id AS id, b.title AS title, b.author AS author, " +
+            "b.description AS description, b.coverImage AS coverImage " +
+            "FROM BookshelfItem i JOIN i.book b " +
+            "WHERE i.bookshelf.user.id = :userId AND i.status = :status AND i.id > :lastId ORDER BY i.id")
+    List<ShelfBookView> findBooksByStatusAfter(@Param("userId") Long userId, @Param("status") StatusBook status,
+                                               @Param("lastId") Long lastId, Pageable pageable);
 }
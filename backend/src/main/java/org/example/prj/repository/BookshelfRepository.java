@@ -1,7 +1,14 @@
 package org.example.prj.repository;
 
 import org.example.prj.entity.Bookshelf;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface BookshelfRepository extends CrudRepository<Bookshelf, Long> {
+import java.util.Optional;
+
+public interface BookshelfRepository extends JpaRepository<Bookshelf, Long> {
+
+    @Query("SELECT s.id FROM Bookshelf s WHERE s.user.id = :userId")
+    Optional<Long> findIdByUserId(@Param("userId") Long userId);
 }
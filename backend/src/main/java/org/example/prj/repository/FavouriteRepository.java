@@ -1,13 +1,71 @@
 package org.example.prj.repository;
 
+import jakarta.transaction.Transactional;
+import org.example.prj.DTO.Request.TilteFolder;
+import org.example.prj.DTO.Response.BookDisplayResponse;
 import org.example.prj.entity.Book;
 import org.example.prj.entity.FavouriteBooks;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface FavouriteRepository extends JpaRepository<FavouriteBooks,Long> {
     Page<Book> findById(Long id, Pageable pageable);
 
     boolean existsByTitle(String title);
+
+    boolean existsByIdAndUserId(Long id, Long userId);
+
+    Optional<FavouriteBooks> findByIdAndUserId(Long id, Long userId);
+
+    // Danh sách thư mục của user kèm số sách (book_count), không load các sách bên trong
+    @Query("SELECT new org.example.prj.DTO.Request.TilteFolder(f.id, f.bookCount, f.title) " +
+            "FROM FavouriteBooks f WHERE f.user.id = :userId ORDER BY f.id")
+    List<TilteFolder> findFoldersByUserId(@Param("userId") Long userId);
+
+    @Query("SELECT COUNT(b) FROM FavouriteBooks f JOIN f.books b WHERE f.id = :id AND b.id = :bookId")
+    long countBookInFolder(@Param("id") Long id, @Param("bookId") Long bookId);
+
+    // Ghi thẳng vào bảng nối, không phải load cả danh sách sách của thư mục
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO favourite_books_mapping (favourite_books_id, book_id) VALUES (:id, :bookId)",
+            nativeQuery = true)
+    int addBook(@Param("id") Long id, @Param("bookId") Long bookId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM favourite_books_mapping WHERE favourite_books_id = :id AND book_id = :bookId",
+            nativeQuery = true)
+    int removeBook(@Param("id") Long id, @Param("bookId") Long bookId);
+
+    // Sách trong thư mục yêu thích, phân trang trong DB theo book_id (index favourite_books_id, book_id)
+    @Query("SELECT " + BookRepository.CARD + " FROM FavouriteBooks f JOIN f.books b WHERE f.id = :id ORDER BY b.id")
+    List<BookDisplayResponse> findCardsByFolderId(@Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT " + BookRepository.CARD + " FROM FavouriteBooks f JOIN f.books b " +
+            "WHERE f.id = :id AND b.id > :lastId ORDER BY b.id")
+    List<BookDisplayResponse> findCardsByFolderIdAfter(@Param("id") Long id, @Param("lastId") Long lastId,
+                                                       Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE FavouriteBooks f SET f.bookCount = f.bookCount + :delta WHERE f.id = :id")
+    int addBookCount(@Param("id") Long id, @Param("delta") long delta);
+
+    @Query("SELECT COALESCE(MAX(f.id), 0) FROM FavouriteBooks f")
+    Long findMaxId();
+
+    // Đếm lại book_count từ bảng nối cho các thư mục có id trong (fromId, toId]
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE favourite_books SET book_count = (SELECT COUNT(*) FROM favourite_books_mapping m " +
+            "WHERE m.favourite_books_id = favourite_books.id) WHERE id > :fromId AND id <= :toId", nativeQuery = true)
+    int recountBooks(@Param("fromId") Long fromId, @Param("toId") Long toId);
 }
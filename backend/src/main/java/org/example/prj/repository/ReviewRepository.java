@@ -1,12 +1,25 @@
 package org.example.prj.repository;
 
+import jakarta.transaction.Transactional;
 import org.example.prj.entity.Review;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
+
 public interface ReviewRepository extends JpaRepository<Review, Long> {
 
     @Query(value = "SELECT rating FROM review WHERE book_id = :bookId AND user_id = :userId", nativeQuery = true)
     Double findRatingByBookIdAndUserId(@Param("bookId") Long bookId, @Param("userId") Long userId);
+
+    // Khóa các review sắp xóa: hai lệnh xóa đồng thời không trừ aggregate của sách hai lần
+    @Query(value = "SELECT rating FROM review WHERE book_id = :bookId AND user_id = :userId FOR UPDATE", nativeQuery = true)
+    List<Double> lockRatingsByBookIdAndUserId(@Param("bookId") Long bookId, @Param("userId") Long userId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE review SET rating = :rating WHERE book_id = :bookId AND user_id = :userId", nativeQuery = true)
+    int updateRating(@Param("bookId") Long bookId, @Param("userId") Long userId, @Param("rating") double rating);
 }
@@ -1,7 +1,9 @@
 package org.example.prj.repository;
 
 import jakarta.transaction.Transactional;
+import org.example.prj.DTO.Response.ListUserResponse;
 import org.example.prj.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -9,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -26,6 +29,20 @@ public interface UserRepository extends JpaRepository<User, Long> {
         return countNewUsersBetween(start, now);
     }
 
+    // User kèm số sách theo từng trạng thái, đọc từ bộ đếm user_shelf_stats (1 dòng/user), không load bookshelf
+    String SUMMARY = "SELECT new org.example.prj.DTO.Response.ListUserResponse(u.id, u.username, u.email, " +
+            "u.active, u.createdAt, COALESCE(s.readingCount, 0L), COALESCE(s.wantCount, 0L), " +
+            "COALESCE(s.completedCount, 0L)) " +
+            "FROM User u LEFT JOIN UserShelfStats s ON s.userId = u.id ";
+    String SUMMARY_ORDER = " ORDER BY u.id";
+
+    @Query(SUMMARY + SUMMARY_ORDER)
+    List<ListUserResponse> findUserSummaries(Pageable pageable);
+
+    // Phân trang keyset theo id
+    @Query(SUMMARY + "WHERE u.id > :lastId" + SUMMARY_ORDER)
+    List<ListUserResponse> findUserSummariesAfter(@Param("lastId") Long lastId, Pageable pageable);
+
     @Modifying
     @Transactional
     @Query(value = "DELETE FROM review WHERE book_id = :bookId AND user_id = :userId", nativeQuery = true)
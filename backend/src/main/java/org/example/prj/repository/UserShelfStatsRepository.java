@@ -0,0 +1,56 @@
+package org.example.prj.repository;
+
+import jakarta.transaction.Transactional;
+import org.example.prj.entity.UserShelfStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserShelfStatsRepository extends JpaRepository<UserShelfStats, Long> {
+    // Cộng dồn trong DB nên hai thao tác đồng thời không ghi đè nhau; trả về 0 nếu user chưa có dòng
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserShelfStats s SET s.wantCount = s.wantCount + :want, " +
+            "s.readingCount = s.readingCount + :reading, s.completedCount = s.completedCount + :completed " +
+            "WHERE s.userId = :userId")
+    int addCounts(@Param("userId") Long userId, @Param("want") long want, @Param("reading") long reading,
+                  @Param("completed") long completed);
+
+    @Query("SELECT COUNT(i) FROM BookshelfItem i WHERE i.bookshelf.user.id = :userId " +
+            "AND i.status = org.example.prj.constant.StatusBook.WANT")
+    long countWant(@Param("userId") Long userId);
+
+    @Query("SELECT COUNT(i) FROM BookshelfItem i WHERE i.bookshelf.user.id = :userId " +
+            "AND i.status = org.example.prj.constant.StatusBook.READING")
+    long countReading(@Param("userId") Long userId);
+
+    @Query("SELECT COUNT(i) FROM BookshelfItem i WHERE i.bookshelf.user.id = :userId " +
+            "AND i.status = org.example.prj.constant.StatusBook.COMPLETED")
+    long countCompleted(@Param("userId") Long userId);
+
+    // Đối soát: tạo dòng cho user chưa có, rồi đếm lại từ bookshelf_item theo từng khoảng user_id
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO user_shelf_stats (user_id, want_count, reading_count, completed_count) " +
+            "SELECT u.id, 0, 0, 0 FROM user u " +
+            "WHERE NOT EXISTS (SELECT 1 FROM user_shelf_stats s WHERE s.user_id = u.id)", nativeQuery = true)
+    int insertMissing();
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE user_shelf_stats SET " +
+            "want_count = (SELECT COUNT(*) FROM bookshelf_item i JOIN bookshelf b ON i.bookshelf_id = b.id " +
+            "WHERE b.user_id = user_shelf_stats.user_id AND i.status = 'WANT'), " +
+            "reading_count = (SELECT COUNT(*) FROM bookshelf_item i JOIN bookshelf b ON i.bookshelf_id = b.id " +
+            "WHERE b.user_id = user_shelf_stats.user_id AND i.status = 'READING'), " +
+            "completed_count = (SELECT COUNT(*) FROM bookshelf_item i JOIN bookshelf b ON i.bookshelf_id = b.id " +
+            "WHERE b.user_id = user_shelf_stats.user_id AND i.status = 'COMPLETED') " +
+            "WHERE user_id > :fromId AND user_id <= :toId", nativeQuery = true)
+    int recount(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query("SELECT COALESCE(MAX(s.userId), 0) FROM UserShelfStats s")
+    Long findMaxUserId();
+}
@@ -0,0 +1,53 @@
+package org.example.prj.search;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bloom filter cho fingerprint SHA-256, bit nằm trong AtomicLongArray nên không cần khóa
+final class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+
+    BloomFilter(long capacity, double falsePositiveRate) {
+        this.capacity = capacity;
+        long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.max(1, (bits + 63) / 64);
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = wordCount * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    void put(String fingerprint) {
+        long h1 = Long.parseUnsignedLong(fingerprint, 0, 16, 16);
+        long h2 = Long.parseUnsignedLong(fingerprint, 16, 32, 16);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = words.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(String fingerprint) {
+        long h1 = Long.parseUnsignedLong(fingerprint, 0, 16, 16);
+        long h2 = Long.parseUnsignedLong(fingerprint, 16, 32, 16);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,334 @@
+package org.example.prj.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.prj.DTO.Projection.BookSearchView;
+import org.example.prj.entity.Book;
+import org.example.prj.event.BookChangedEvent;
+import org.example.prj.event.BooksImportedEvent;
+import org.example.prj.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index trong bộ nhớ (term -> id sách) cho title, author, category, đồng bộ qua BookChangedEvent
+@Slf4j
+@Component
+public class BookSearchIndex {
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Value("${search.fuzzy.threshold:0.3}")
+    private double fuzzyThreshold;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // term -> id sách chứa term đó (TreeMap để tra prefix)
+    private TreeMap<String, PostingList> postings = new TreeMap<>();
+    // id sách -> các term của sách, dùng khi sửa/xóa sách
+    private Map<Long, Set<String>> termsByBook = new HashMap<>();
+    // trigram -> các term có chứa trigram đó, dùng cho tìm kiếm gần đúng
+    private Map<String, Set<String>> termsByTrigram = new HashMap<>();
+
+    private volatile boolean ready = false;
+    // Thay đổi đến trong lúc đang dựng lại (null khi không dựng), phát lại lên map mới trước khi đổi
+    private List<Change> pendingChanges;
+
+    // book == null: sách bị xóa
+    private record Change(Long bookId, Book book) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        TreeMap<String, PostingList> newPostings = new TreeMap<>();
+        Map<Long, Set<String>> newTermsByBook = new HashMap<>();
+        Map<String, Set<String>> newTermsByTrigram = new HashMap<>();
+
+        for (BookSearchView view : bookRepository.findAllSearchViews()) {
+            Set<String> terms = termsOf(view.getSearchKey(), view.getTitle(), view.getAuthor(), view.getCategory());
+            newTermsByBook.put(view.getId(), terms);
+            for (String term : terms) {
+                addPosting(newPostings, newTermsByTrigram, term, view.getId());
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            postings = newPostings;
+            termsByBook = newTermsByBook;
+            termsByTrigram = newTermsByTrigram;
+            List<Change> changes = pendingChanges;
+            pendingChanges = null;
+            for (Change change : changes) {
+                if (change.book() == null) {
+                    remove(change.bookId());
+                } else {
+                    index(change.book());
+                }
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Book search index built: {} books, {} terms in {} ms",
+                newTermsByBook.size(), newPostings.size(), System.currentTimeMillis() - start);
+    }
+
+    // Import hàng loạt không phát BookChangedEvent từng sách nên dựng lại toàn bộ
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksImported(BooksImportedEvent event) {
+        rebuild();
+    }
+
+    // Chạy trước CatalogCache để kết quả tìm kiếm được nạp lại vào cache luôn lấy từ index mới
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            remove(event.getBookId());
+        } else {
+            index(event.getBook());
+        }
+    }
+
+    public void index(Book book) {
+        Set<String> terms = termsOf(book.getSearchKey(), book.getTitle(), book.getAuthor(), book.getCategory());
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(new Change(book.getId(), book));
+            }
+            unindex(book.getId());
+            termsByBook.put(book.getId(), terms);
+            for (String term : terms) {
+                addPosting(postings, termsByTrigram, term, book.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bookId) {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(new Change(bookId, null));
+            }
+            unindex(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Ưu tiên search_key đã lưu; sách cũ chưa được backfill thì tính tại chỗ
+    private static Set<String> termsOf(String searchKey, String title, String author, String category) {
+        if (searchKey == null) {
+            searchKey = SearchNormalizer.searchKey(title, author, category);
+        }
+        return SearchNormalizer.tokenize(searchKey);
+    }
+
+    private void unindex(Long bookId) {
+        Set<String> oldTerms = termsByBook.remove(bookId);
+        if (oldTerms == null) {
+            return;
+        }
+        for (String term : oldTerms) {
+            PostingList list = postings.get(term);
+            if (list != null) {
+                list.remove(bookId);
+                if (list.isEmpty()) {
+                    postings.remove(term);
+                    removeTermTrigrams(term);
+                }
+            }
+        }
+    }
+
+    private static void addPosting(Map<String, PostingList> postings, Map<String, Set<String>> termsByTrigram,
+                                   String term, long bookId) {
+        PostingList list = postings.get(term);
+        if (list == null) {
+            // Term mới xuất hiện lần đầu -> đăng ký các trigram của nó
+            list = new PostingList();
+            postings.put(term, list);
+            for (String gram : SearchNormalizer.trigrams(term)) {
+                termsByTrigram.computeIfAbsent(gram, g -> new HashSet<>()).add(term);
+            }
+        }
+        list.add(bookId);
+    }
+
+    private void removeTermTrigrams(String term) {
+        for (String gram : SearchNormalizer.trigrams(term)) {
+            Set<String> terms = termsByTrigram.get(gram);
+            if (terms != null) {
+                terms.remove(term);
+                if (terms.isEmpty()) {
+                    termsByTrigram.remove(gram);
+                }
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return termsByBook.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Mọi token phải khớp tiền tố một term của sách, kết quả theo id
+    public List<Long> search(String keyword) {
+        Set<String> tokens = SearchNormalizer.tokenize(keyword);
+        lock.readLock().lock();
+        try {
+            if (tokens.isEmpty()) {
+                return termsByBook.keySet().stream().sorted().toList();
+            }
+            long[] result = null;
+            for (String token : tokens) {
+                long[] matches = prefixMatches(token);
+                result = (result == null) ? matches : PostingList.intersect(result, matches);
+                if (result.length == 0) {
+                    return List.of();
+                }
+            }
+            return toList(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Tìm chấp nhận gõ sai: so trigram như pg_trgm, sắp theo độ giống trung bình rồi theo id
+    public List<Long> fuzzySearch(String keyword) {
+        Set<String> tokens = SearchNormalizer.tokenize(keyword);
+        if (tokens.isEmpty()) {
+            return search(keyword);
+        }
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String token : tokens) {
+                Map<Long, Double> tokenScores = fuzzyMatches(token);
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    Map<Long, Double> both = new HashMap<>();
+                    for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                        Double score = tokenScores.get(entry.getKey());
+                        if (score != null) {
+                            both.put(entry.getKey(), entry.getValue() + score);
+                        }
+                    }
+                    scores = both;
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            // Tổng điểm cùng số token nên sắp theo tổng cũng chính là theo trung bình
+            Map<Long, Double> finalScores = scores;
+            return finalScores.keySet().stream()
+                    .sorted(Comparator.comparing((Long id) -> finalScores.get(id)).reversed()
+                            .thenComparing(Comparator.naturalOrder()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // id sách -> độ tương đồng tốt nhất giữa token và một term của sách
+    private Map<Long, Double> fuzzyMatches(String token) {
+        Set<String> queryGrams = SearchNormalizer.trigrams(token);
+        Map<String, Integer> shared = new HashMap<>();
+        for (String gram : queryGrams) {
+            Set<String> terms = termsByTrigram.get(gram);
+            if (terms != null) {
+                for (String term : terms) {
+                    shared.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+
+        Map<Long, Double> best = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : shared.entrySet()) {
+            String term = entry.getKey();
+            double similarity = similarity(token, queryGrams, term, entry.getValue());
+            if (similarity < fuzzyThreshold) {
+                continue;
+            }
+            for (long id : postings.get(term).toArray()) {
+                best.merge(id, similarity, Math::max);
+            }
+        }
+        return best;
+    }
+
+    private static double similarity(String token, Set<String> tokenGrams, String term, int common) {
+        if (term.startsWith(token)) {
+            return 1.0;
+        }
+        int union = tokenGrams.size() + SearchNormalizer.trigrams(term).size() - common;
+        return (double) common / union;
+    }
+
+    // Sách có search key này có khớp keyword không, không cần sách còn trong index
+    public boolean matches(String keyword, boolean fuzzy, String searchKey) {
+        Set<String> tokens = SearchNormalizer.tokenize(keyword);
+        Set<String> terms = SearchNormalizer.tokenize(searchKey);
+        for (String token : tokens) {
+            boolean found = false;
+            Set<String> tokenGrams = fuzzy ? SearchNormalizer.trigrams(token) : null;
+            for (String term : terms) {
+                if (term.startsWith(token)) {
+                    found = true;
+                } else if (fuzzy) {
+                    Set<String> common = new HashSet<>(SearchNormalizer.trigrams(term));
+                    common.retainAll(tokenGrams);
+                    found = similarity(token, tokenGrams, term, common.size()) >= fuzzyThreshold;
+                }
+                if (found) {
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Hợp posting list của mọi term bắt đầu bằng token
+    private long[] prefixMatches(String token) {
+        return PostingList.unionAll(postings.subMap(token, true, token + Character.MAX_VALUE, true).values());
+    }
+
+    private static List<Long> toList(long[] ids) {
+        List<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+}
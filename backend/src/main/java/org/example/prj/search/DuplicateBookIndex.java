@@ -0,0 +1,131 @@
+package org.example.prj.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.prj.DTO.Projection.BookSearchView;
+import org.example.prj.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Kiểm tra sách trùng (title, author) bằng Bloom filter, chỉ xuống DB khi có thể trùng; unique key vẫn là chốt cuối
+@Slf4j
+@Component
+public class DuplicateBookIndex {
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${book.duplicate.expected-books:1000000}")
+    private long expectedBooks;
+    @Value("${book.duplicate.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    // null khi chưa dựng xong: mọi kiểm tra đều xuống DB
+    private volatile BloomFilter filter;
+    private final AtomicLong size = new AtomicLong();
+    // Bộ lọc đã vượt sức chứa: dựng lại ở luồng scheduler, không chặn request thêm sách
+    private volatile boolean rebuildNeeded;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        backfillFingerprints();
+        rebuild();
+    }
+
+    // Tính fingerprint cho các sách được thêm trước khi có cột này
+    private void backfillFingerprints() {
+        long lastId = 0;
+        int updated = 0;
+        int duplicates = 0;
+        List<BookSearchView> rows;
+        do {
+            rows = bookRepository.findSearchViewsWithoutFingerprint(lastId, PageRequest.of(0, 500));
+            for (BookSearchView row : rows) {
+                try {
+                    bookRepository.updateFingerprint(row.getId(),
+                            SearchNormalizer.fingerprint(row.getTitle(), row.getAuthor()));
+                    updated++;
+                } catch (DataIntegrityViolationException e) {
+                    // Dữ liệu cũ đã có sách trùng: giữ NULL và ghi log id hai sách để admin gộp/xóa
+                    duplicates++;
+                    String fingerprint = SearchNormalizer.fingerprint(row.getTitle(), row.getAuthor());
+                    log.warn("Book {} has the same title and author as book {}, fingerprint left empty",
+                            row.getId(), bookRepository.findIdByFingerprint(fingerprint).orElse(null));
+                }
+                lastId = row.getId();
+            }
+        } while (!rows.isEmpty());
+        if (updated > 0 || duplicates > 0) {
+            log.info("Backfilled fingerprint for {} books, {} duplicates left without fingerprint", updated, duplicates);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${book.duplicate.rebuild-check-ms:60000}")
+    public void rebuildIfNeeded() {
+        if (rebuildNeeded) {
+            rebuildNeeded = false;
+            rebuild();
+        }
+    }
+
+    private synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        // Chừa gấp đôi số sách hiện có để tỉ lệ dương tính giả không tăng nhanh khi thêm sách
+        long capacity = Math.max(expectedBooks, bookRepository.count() * 2);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        long[] count = new long[1];
+        BloomFilter newFilter = readOnly.execute(status -> {
+            BloomFilter bloom = new BloomFilter(capacity, falsePositiveRate);
+            try (Stream<String> fingerprints = bookRepository.streamAllFingerprints()) {
+                fingerprints.forEach(fingerprint -> {
+                    bloom.put(fingerprint);
+                    count[0]++;
+                });
+            }
+            return bloom;
+        });
+        size.set(count[0]);
+        filter = newFilter;
+        log.info("Duplicate filter built: {} fingerprints, capacity {} in {} ms",
+                count[0], capacity, System.currentTimeMillis() - start);
+    }
+
+    public boolean mightExist(String fingerprint) {
+        BloomFilter current = filter;
+        return current == null || current.mightContain(fingerprint);
+    }
+
+    // excludeId: sách đang sửa, null khi thêm mới
+    public boolean exists(String fingerprint, Long excludeId) {
+        if (!mightExist(fingerprint)) {
+            return false;
+        }
+        return excludeId == null ? bookRepository.existsByFingerprint(fingerprint)
+                : bookRepository.existsByFingerprintAndIdNot(fingerprint, excludeId);
+    }
+
+    // Gọi sau khi ghi sách mới; thêm nhầm (transaction rollback) chỉ gây thêm một lần kiểm tra DB
+    public void add(String fingerprint) {
+        BloomFilter current = filter;
+        if (current == null) {
+            return;
+        }
+        current.put(fingerprint);
+        if (size.incrementAndGet() > current.capacity()) {
+            rebuildNeeded = true;
+        }
+    }
+}
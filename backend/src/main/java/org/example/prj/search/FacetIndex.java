@@ -0,0 +1,191 @@
+package org.example.prj.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.example.prj.DTO.Projection.BookFacetView;
+import org.example.prj.entity.Book;
+import org.example.prj.event.BookChangedEvent;
+import org.example.prj.event.BooksImportedEvent;
+import org.example.prj.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Lọc theo category/language/subject: mỗi giá trị một bitmap id sách, đếm bằng AND
+@Slf4j
+@Component
+public class FacetIndex {
+    public static final List<String> FACETS = List.of("category", "language", "subject");
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private IdBitmap all = new IdBitmap();
+    // facet -> giá trị đã chuẩn hóa -> bitmap id sách
+    private Map<String, Map<String, IdBitmap>> bitmaps = emptyFacets();
+    // facet -> giá trị đã chuẩn hóa -> nhãn hiển thị (giá trị gốc gặp đầu tiên)
+    private Map<String, Map<String, String>> labels = emptyFacets();
+    // id sách -> giá trị đã chuẩn hóa theo thứ tự FACETS, dùng khi sửa/xóa
+    private Map<Long, String[]> valuesByBook = new HashMap<>();
+    // Thay đổi đến trong lúc đang dựng lại (null khi không dựng), phát lại sau khi nạp dữ liệu mới
+    private List<Change> pendingChanges;
+
+    // book == null: sách bị xóa
+    private record Change(Long bookId, Book book) {
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class FacetResult {
+        private final List<Long> pageIds;
+        private final long total;
+        private final Map<String, Map<String, Long>> counts;
+    }
+
+    private static <V> Map<String, Map<String, V>> emptyFacets() {
+        Map<String, Map<String, V>> map = new HashMap<>();
+        for (String facet : FACETS) {
+            map.put(facet, new HashMap<>());
+        }
+        return map;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<BookFacetView> views = bookRepository.findAllFacetViews();
+        lock.writeLock().lock();
+        try {
+            all = new IdBitmap();
+            bitmaps = emptyFacets();
+            labels = emptyFacets();
+            valuesByBook = new HashMap<>();
+            for (BookFacetView view : views) {
+                add(view.getId(), view.getCategory(), view.getLanguage(), view.getSubject());
+            }
+            List<Change> changes = pendingChanges;
+            pendingChanges = null;
+            for (Change change : changes) {
+                apply(change.bookId(), change.book());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Facet index built: {} books in {} ms", views.size(), System.currentTimeMillis() - start);
+    }
+
+    // Import hàng loạt không phát BookChangedEvent từng sách nên dựng lại toàn bộ
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksImported(BooksImportedEvent event) {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        Book book = event.getType() == BookChangedEvent.Type.DELETED ? null : event.getBook();
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(new Change(event.getBookId(), book));
+            }
+            apply(event.getBookId(), book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Long bookId, Book book) {
+        remove(bookId);
+        if (book != null) {
+            add(book.getId(), book.getCategory(), book.getLanguage(), book.getSubject());
+        }
+    }
+
+    private void add(Long bookId, String... rawValues) {
+        all.add(bookId);
+        String[] keys = new String[FACETS.size()];
+        for (int i = 0; i < FACETS.size(); i++) {
+            String key = SearchNormalizer.normalize(rawValues[i]);
+            if (key.isEmpty()) {
+                continue;
+            }
+            String facet = FACETS.get(i);
+            keys[i] = key;
+            bitmaps.get(facet).computeIfAbsent(key, k -> new IdBitmap()).add(bookId);
+            labels.get(facet).putIfAbsent(key, rawValues[i].trim());
+        }
+        valuesByBook.put(bookId, keys);
+    }
+
+    private void remove(Long bookId) {
+        all.remove(bookId);
+        String[] keys = valuesByBook.remove(bookId);
+        if (keys == null) {
+            return;
+        }
+        for (int i = 0; i < FACETS.size(); i++) {
+            if (keys[i] == null) {
+                continue;
+            }
+            String facet = FACETS.get(i);
+            IdBitmap bitmap = bitmaps.get(facet).get(keys[i]);
+            if (bitmap != null) {
+                bitmap.remove(bookId);
+                if (bitmap.isEmpty()) {
+                    bitmaps.get(facet).remove(keys[i]);
+                    labels.get(facet).remove(keys[i]);
+                }
+            }
+        }
+    }
+
+    // candidates: id từ tìm kiếm, null = cả catalog; filters có giá trị rỗng bị bỏ qua
+    public FacetResult browse(Collection<Long> candidates, Map<String, String> filters, long offset, int limit) {
+        lock.readLock().lock();
+        try {
+            IdBitmap result = (candidates == null) ? all : IdBitmap.of(candidates);
+            for (Map.Entry<String, String> filter : filters.entrySet()) {
+                String key = SearchNormalizer.normalize(filter.getValue());
+                if (key.isEmpty() || !bitmaps.containsKey(filter.getKey())) {
+                    continue;
+                }
+                IdBitmap selected = bitmaps.get(filter.getKey()).get(key);
+                result = (selected == null) ? new IdBitmap() : result.and(selected);
+            }
+
+            Map<String, Map<String, Long>> counts = new LinkedHashMap<>();
+            for (String facet : FACETS) {
+                List<Map.Entry<String, Long>> values = new ArrayList<>();
+                for (Map.Entry<String, IdBitmap> entry : bitmaps.get(facet).entrySet()) {
+                    long count = entry.getValue().andCardinality(result);
+                    if (count > 0) {
+                        values.add(Map.entry(labels.get(facet).get(entry.getKey()), count));
+                    }
+                }
+                values.sort(Map.Entry.<String, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()));
+                Map<String, Long> ordered = new LinkedHashMap<>();
+                values.forEach(v -> ordered.put(v.getKey(), v.getValue()));
+                counts.put(facet, ordered);
+            }
+
+            return new FacetResult(result.slice(offset, limit), result.cardinality(), counts);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
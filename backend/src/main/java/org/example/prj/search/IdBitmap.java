@@ -0,0 +1,260 @@
+package org.example.prj.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Tập id nén kiểu Roaring: chunk 65536 id, mảng char khi thưa, bitmap khi dày; không thread-safe
+final class IdBitmap {
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private final TreeMap<Long, Chunk> chunks = new TreeMap<>();
+
+    private static final class Chunk {
+        // Một trong hai dạng: values (thưa) hoặc words (dày)
+        char[] values = new char[4];
+        long[] words;
+        int cardinality;
+
+        boolean isBitmap() {
+            return words != null;
+        }
+
+        boolean add(char low) {
+            if (isBitmap()) {
+                long before = words[low >>> 6];
+                words[low >>> 6] |= 1L << low;
+                if (before == words[low >>> 6]) {
+                    return false;
+                }
+                cardinality++;
+                return true;
+            }
+            int pos = Arrays.binarySearch(values, 0, cardinality, low);
+            if (pos >= 0) {
+                return false;
+            }
+            if (cardinality == ARRAY_MAX) {
+                toBitmap();
+                return add(low);
+            }
+            int insertAt = -pos - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_MAX));
+            }
+            System.arraycopy(values, insertAt, values, insertAt + 1, cardinality - insertAt);
+            values[insertAt] = low;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(char low) {
+            if (isBitmap()) {
+                long before = words[low >>> 6];
+                words[low >>> 6] &= ~(1L << low);
+                if (before == words[low >>> 6]) {
+                    return false;
+                }
+                cardinality--;
+                if (cardinality <= ARRAY_MAX / 2) {
+                    toArray();
+                }
+                return true;
+            }
+            int pos = Arrays.binarySearch(values, 0, cardinality, low);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(values, pos + 1, values, pos, cardinality - pos - 1);
+            cardinality--;
+            return true;
+        }
+
+        boolean contains(char low) {
+            if (isBitmap()) {
+                return (words[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        private void toBitmap() {
+            words = new long[WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            values = null;
+        }
+
+        private void toArray() {
+            char[] array = new char[cardinality];
+            int n = 0;
+            for (int w = 0; w < WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    array[n++] = (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            values = array;
+            words = null;
+        }
+
+        Chunk and(Chunk other) {
+            Chunk result = new Chunk();
+            if (isBitmap() && other.isBitmap()) {
+                result.words = new long[WORDS];
+                for (int w = 0; w < WORDS; w++) {
+                    result.words[w] = words[w] & other.words[w];
+                    result.cardinality += Long.bitCount(result.words[w]);
+                }
+                if (result.cardinality <= ARRAY_MAX) {
+                    result.toArray();
+                }
+                return result;
+            }
+            if (isBitmap()) {
+                return other.and(this);
+            }
+            // this là mảng: giữ các phần tử other cũng chứa
+            result.values = new char[cardinality];
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    result.values[result.cardinality++] = values[i];
+                }
+            }
+            return result;
+        }
+
+        int andCardinality(Chunk other) {
+            if (isBitmap() && other.isBitmap()) {
+                int count = 0;
+                for (int w = 0; w < WORDS; w++) {
+                    count += Long.bitCount(words[w] & other.words[w]);
+                }
+                return count;
+            }
+            if (isBitmap()) {
+                return other.andCardinality(this);
+            }
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        // Ghi các phần tử theo thứ tự tăng dần, bỏ qua skip phần tử đầu, tối đa limit phần tử
+        int collect(long high, int skip, int limit, List<Long> out) {
+            int seen = 0;
+            if (isBitmap()) {
+                for (int w = 0; w < WORDS && out.size() < limit; w++) {
+                    long word = words[w];
+                    while (word != 0 && out.size() < limit) {
+                        if (seen++ >= skip) {
+                            out.add((high << 16) | (w * 64 + Long.numberOfTrailingZeros(word)));
+                        }
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality && out.size() < limit; i++) {
+                    if (seen++ >= skip) {
+                        out.add((high << 16) | values[i]);
+                    }
+                }
+            }
+            return seen;
+        }
+    }
+
+    static IdBitmap of(Iterable<Long> ids) {
+        IdBitmap bitmap = new IdBitmap();
+        for (Long id : ids) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    boolean add(long id) {
+        return chunks.computeIfAbsent(id >>> 16, k -> new Chunk()).add((char) id);
+    }
+
+    boolean remove(long id) {
+        Chunk chunk = chunks.get(id >>> 16);
+        if (chunk == null || !chunk.remove((char) id)) {
+            return false;
+        }
+        if (chunk.cardinality == 0) {
+            chunks.remove(id >>> 16);
+        }
+        return true;
+    }
+
+    boolean contains(long id) {
+        Chunk chunk = chunks.get(id >>> 16);
+        return chunk != null && chunk.contains((char) id);
+    }
+
+    boolean isEmpty() {
+        return chunks.isEmpty();
+    }
+
+    long cardinality() {
+        long total = 0;
+        for (Chunk chunk : chunks.values()) {
+            total += chunk.cardinality;
+        }
+        return total;
+    }
+
+    IdBitmap and(IdBitmap other) {
+        IdBitmap result = new IdBitmap();
+        for (Map.Entry<Long, Chunk> entry : chunks.entrySet()) {
+            Chunk otherChunk = other.chunks.get(entry.getKey());
+            if (otherChunk != null) {
+                Chunk chunk = entry.getValue().and(otherChunk);
+                if (chunk.cardinality > 0) {
+                    result.chunks.put(entry.getKey(), chunk);
+                }
+            }
+        }
+        return result;
+    }
+
+    // |this ∩ other| mà không tạo bitmap trung gian
+    long andCardinality(IdBitmap other) {
+        long total = 0;
+        for (Map.Entry<Long, Chunk> entry : chunks.entrySet()) {
+            Chunk otherChunk = other.chunks.get(entry.getKey());
+            if (otherChunk != null) {
+                total += entry.getValue().andCardinality(otherChunk);
+            }
+        }
+        return total;
+    }
+
+    // Các id thứ offset .. offset+limit-1 theo thứ tự tăng dần
+    List<Long> slice(long offset, int limit) {
+        // limit do client truyền vào: không cấp phát vượt số id thực có
+        List<Long> out = new ArrayList<>((int) Math.min(limit, cardinality()));
+        long skip = offset;
+        for (Map.Entry<Long, Chunk> entry : chunks.entrySet()) {
+            if (out.size() >= limit) {
+                break;
+            }
+            Chunk chunk = entry.getValue();
+            if (skip >= chunk.cardinality) {
+                skip -= chunk.cardinality;
+                continue;
+            }
+            chunk.collect(entry.getKey(), (int) skip, limit, out);
+            skip = 0;
+        }
+        return out;
+    }
+}
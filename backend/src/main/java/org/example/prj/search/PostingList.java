@@ -0,0 +1,97 @@
+package org.example.prj.search;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.PriorityQueue;
+
+// Danh sách id sách đã sắp xếp, không trùng; không thread-safe, BookSearchIndex tự khóa
+final class PostingList {
+    private long[] ids = new long[4];
+    private int size;
+
+    boolean add(long id) {
+        int pos = Arrays.binarySearch(ids, 0, size, id);
+        if (pos >= 0) {
+            return false;
+        }
+        int insertAt = -pos - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+        return true;
+    }
+
+    boolean remove(long id) {
+        int pos = Arrays.binarySearch(ids, 0, size, id);
+        if (pos < 0) {
+            return false;
+        }
+        System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+        size--;
+        return true;
+    }
+
+    boolean contains(long id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    // Hợp của nhiều posting list bằng một lần trộn k đường (heap theo phần tử hiện tại của mỗi list)
+    static long[] unionAll(Collection<PostingList> lists) {
+        PostingList[] sources = lists.toArray(new PostingList[0]);
+        int total = 0;
+        // Mỗi phần tử heap là {list, vị trí hiện tại trong list}
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Math.max(1, sources.length),
+                (x, y) -> Long.compare(sources[x[0]].ids[x[1]], sources[y[0]].ids[y[1]]));
+        for (int k = 0; k < sources.length; k++) {
+            total += sources[k].size;
+            if (sources[k].size > 0) {
+                heap.add(new int[]{k, 0});
+            }
+        }
+        long[] out = new long[total];
+        int n = 0;
+        while (!heap.isEmpty()) {
+            int[] cursor = heap.poll();
+            long id = sources[cursor[0]].ids[cursor[1]];
+            if (n == 0 || out[n - 1] != id) {
+                out[n++] = id;
+            }
+            if (++cursor[1] < sources[cursor[0]].size) {
+                heap.add(cursor);
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    // Giao của hai mảng id đã sắp xếp
+    static long[] intersect(long[] a, long[] b) {
+        long[] out = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
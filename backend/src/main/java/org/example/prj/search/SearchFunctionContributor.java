@@ -0,0 +1,16 @@
+package org.example.prj.search;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.StandardBasicTypes;
+
+// Hàm match_against(cột, query) dùng được trong JPQL, sinh ra MATCH ... AGAINST (... IN BOOLEAN MODE) của MySQL
+public class SearchFunctionContributor implements FunctionContributor {
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        functionContributions.getFunctionRegistry().registerPattern("match_against",
+                "match(?1) against (?2 in boolean mode)",
+                functionContributions.getTypeConfiguration().getBasicTypeRegistry()
+                        .resolve(StandardBasicTypes.DOUBLE));
+    }
+}
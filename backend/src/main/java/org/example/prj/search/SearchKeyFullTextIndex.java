@@ -0,0 +1,44 @@
+package org.example.prj.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// ddl-auto không tạo được FULLTEXT index: tạo khi khởi động nếu chưa có, và bỏ index B-tree cũ trên search_key
+@Slf4j
+@Component
+public class SearchKeyFullTextIndex {
+    static final String INDEX_NAME = "idx_book_search_key_ft";
+    private static final String OLD_INDEX_NAME = "idx_book_search_key";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Order(0)
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndex() {
+        try {
+            if (!exists(INDEX_NAME)) {
+                jdbcTemplate.execute("CREATE FULLTEXT INDEX " + INDEX_NAME + " ON book (search_key)");
+                log.info("Created FULLTEXT index {} on book.search_key", INDEX_NAME);
+            }
+            // LIKE '%...%' không dùng được index này, chỉ tốn thêm khi ghi
+            if (exists(OLD_INDEX_NAME)) {
+                jdbcTemplate.execute("DROP INDEX " + OLD_INDEX_NAME + " ON book");
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not create FULLTEXT index on book.search_key: {}", e.getMessage());
+        }
+    }
+
+    private boolean exists(String indexName) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.statistics " +
+                "WHERE table_schema = DATABASE() AND table_name = 'book' AND index_name = ?", Integer.class, indexName);
+        return count != null && count > 0;
+    }
+}
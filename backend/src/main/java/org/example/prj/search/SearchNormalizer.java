@@ -0,0 +1,92 @@
+package org.example.prj.search;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+public final class SearchNormalizer {
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    // Giới hạn theo độ dài cột book.search_key (index MySQL tối đa 3072 byte)
+    public static final int SEARCH_KEY_LENGTH = 700;
+
+    private SearchNormalizer() {
+    }
+
+    // Viết thường, bỏ dấu ("Nguyễn" -> "nguyen"); đ/Đ không tách được bằng NFD nên đổi tay
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("")
+                .replace('đ', 'd')
+                .trim();
+    }
+
+    // Khóa tìm kiếm lưu ở cột book.search_key: các term đã bỏ dấu, cách nhau bởi một khoảng trắng
+    public static String searchKey(String title, String author, String category) {
+        String key = String.join(" ", tokenize(title, author, category));
+        if (key.length() <= SEARCH_KEY_LENGTH) {
+            return key;
+        }
+        // Cắt ở ranh giới term để không để lại nửa từ
+        int cut = key.lastIndexOf(' ', SEARCH_KEY_LENGTH);
+        return key.substring(0, cut > 0 ? cut : SEARCH_KEY_LENGTH);
+    }
+
+    // SHA-256 của title + author đã chuẩn hóa, dùng để phát hiện sách trùng
+    public static String fingerprint(String title, String author) {
+        String key = String.join(" ", tokenize(title)) + "|" + String.join(" ", tokenize(author));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Tách chuỗi thành các term (giữ thứ tự, bỏ trùng)
+    public static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : SEPARATOR.split(normalize(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    public static Set<String> tokenize(String... fields) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String field : fields) {
+            tokens.addAll(tokenize(field));
+        }
+        return tokens;
+    }
+
+    // Query FULLTEXT boolean mode ("+tolst* +anna*"): token lấy từ tokenize() như search_key nên không chứa toán tử
+    public static String fullTextQuery(String keyword) {
+        StringBuilder query = new StringBuilder();
+        for (String token : tokenize(keyword)) {
+            query.append(query.isEmpty() ? "" : " ").append('+').append(token).append('*');
+        }
+        return query.toString();
+    }
+
+    // Trigram kiểu pg_trgm: thêm 2 khoảng trắng phía trước và 1 phía sau term
+    public static Set<String> trigrams(String term) {
+        Set<String> grams = new LinkedHashSet<>();
+        String padded = "  " + term + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            grams.add(padded.substring(i, i + 3));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,436 @@
+package org.example.prj.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.prj.DTO.Projection.BookCountView;
+import org.example.prj.DTO.Projection.BookSearchView;
+import org.example.prj.DTO.Response.SuggestionResponse;
+import org.example.prj.entity.Book;
+import org.example.prj.event.BookChangedEvent;
+import org.example.prj.event.BooksImportedEvent;
+import org.example.prj.event.BookshelfChangedEvent;
+import org.example.prj.repository.BookRepository;
+import org.example.prj.repository.BookshelfItemRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Gợi ý theo tiền tố tên sách/tác giả: radix trie, mỗi node giữ sẵn top-K theo độ phổ biến
+@Slf4j
+@Component
+public class SuggestionIndex {
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private BookshelfItemRepository bookshelfItemRepository;
+
+    @Value("${search.suggest.top-k:10}")
+    private int topK;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Node root = new Node("");
+    private Map<Long, Entry> titleEntries = new HashMap<>();
+    private Map<String, Entry> authorEntries = new HashMap<>();
+    // id sách -> key tác giả, để gỡ sách khỏi tác giả cũ khi sửa/xóa
+    private Map<Long, String> authorKeyByBook = new HashMap<>();
+    private Map<Long, Long> popularityByBook = new HashMap<>();
+    // Khi dựng lại toàn bộ thì bỏ qua tính top-K từng key, tính một lượt ở cuối
+    private boolean bulkLoading = false;
+    // Thay đổi đến trong lúc đang dựng lại (null khi không dựng), phát lại theo đúng thứ tự sau khi nạp xong
+    private List<Change> pendingChanges;
+
+    // Đúng một trong hai khác null
+    private record Change(BookChangedEvent book, BookshelfChangedEvent shelf) {
+    }
+
+    private static final class Node {
+        String label;
+        Map<Character, Node> children;
+        List<Entry> terminals;
+        Entry[] top = new Entry[0];
+
+        Node(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final class Entry {
+        final String text;
+        final String type;
+        final Long bookId;
+        final List<String> keys;
+        // Chỉ dùng cho AUTHOR: các sách của tác giả này
+        final Set<Long> bookIds = new HashSet<>();
+        long popularity;
+
+        Entry(String text, String type, Long bookId, List<String> keys) {
+            this.text = text;
+            this.type = type;
+            this.bookId = bookId;
+            this.keys = keys;
+        }
+    }
+
+    private static final Comparator<Entry> RANKING = Comparator
+            .comparingLong((Entry e) -> e.popularity).reversed()
+            .thenComparingInt(e -> e.text.length())
+            .thenComparing(e -> e.text);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Map<Long, Long> popularity = new HashMap<>();
+        for (BookCountView count : bookshelfItemRepository.countShelvesByBook()) {
+            popularity.put(count.getBookId(), count.getTotal());
+        }
+        List<BookSearchView> views = bookRepository.findAllSearchViews();
+
+        lock.writeLock().lock();
+        try {
+            root = new Node("");
+            titleEntries = new HashMap<>();
+            authorEntries = new HashMap<>();
+            authorKeyByBook = new HashMap<>();
+            popularityByBook = popularity;
+            bulkLoading = true;
+            for (BookSearchView view : views) {
+                add(view.getId(), view.getTitle(), view.getAuthor());
+            }
+            recomputeAll(root);
+            bulkLoading = false;
+            List<Change> changes = pendingChanges;
+            pendingChanges = null;
+            for (Change change : changes) {
+                if (change.book() != null) {
+                    applyBookChange(change.book());
+                } else {
+                    applyShelfChange(change.shelf());
+                }
+            }
+        } finally {
+            bulkLoading = false;
+            pendingChanges = null;
+            lock.writeLock().unlock();
+        }
+        log.info("Suggestion index built: {} titles, {} authors in {} ms",
+                titleEntries.size(), authorEntries.size(), System.currentTimeMillis() - start);
+    }
+
+    // Import hàng loạt không phát BookChangedEvent từng sách nên dựng lại toàn bộ
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksImported(BooksImportedEvent event) {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(new Change(event, null));
+            }
+            applyBookChange(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookshelfChanged(BookshelfChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(new Change(null, event));
+            }
+            applyShelfChange(event);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void applyBookChange(BookChangedEvent event) {
+        remove(event.getBookId());
+        if (event.getType() != BookChangedEvent.Type.DELETED) {
+            Book book = event.getBook();
+            add(book.getId(), book.getTitle(), book.getAuthor());
+        } else {
+            popularityByBook.remove(event.getBookId());
+        }
+    }
+
+    private void applyShelfChange(BookshelfChangedEvent event) {
+        Long bookId = event.getBookId();
+        popularityByBook.merge(bookId, (long) event.getDelta(), Long::sum);
+        Entry title = titleEntries.get(bookId);
+        if (title != null) {
+            title.popularity += event.getDelta();
+            refresh(title);
+        }
+        String authorKey = authorKeyByBook.get(bookId);
+        if (authorKey != null) {
+            Entry author = authorEntries.get(authorKey);
+            author.popularity += event.getDelta();
+            refresh(author);
+        }
+    }
+
+    public List<SuggestionResponse> suggest(String query, int limit) {
+        String prefix = String.join(" ", SearchNormalizer.tokenize(query));
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        Entry[] top;
+        lock.readLock().lock();
+        try {
+            top = lookup(prefix);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Arrays.stream(top)
+                .limit(Math.max(0, Math.min(limit, topK)))
+                .map(e -> SuggestionResponse.builder()
+                        .text(e.text)
+                        .type(e.type)
+                        .bookId(e.bookId)
+                        .build())
+                .toList();
+    }
+
+    // ----- cập nhật entry (gọi khi đang giữ write lock) -----
+
+    private void add(Long bookId, String title, String author) {
+        long popularity = popularityByBook.getOrDefault(bookId, 0L);
+
+        List<String> titleTokens = new ArrayList<>(SearchNormalizer.tokenize(title));
+        if (!titleTokens.isEmpty()) {
+            Entry entry = new Entry(title, "TITLE", bookId, wordSuffixes(titleTokens));
+            entry.popularity = popularity;
+            titleEntries.put(bookId, entry);
+            insertKeys(entry);
+        }
+
+        List<String> authorTokens = new ArrayList<>(SearchNormalizer.tokenize(author));
+        if (!authorTokens.isEmpty()) {
+            String authorKey = String.join(" ", authorTokens);
+            Entry entry = authorEntries.get(authorKey);
+            if (entry == null) {
+                entry = new Entry(author, "AUTHOR", null, wordSuffixes(authorTokens));
+                entry.bookIds.add(bookId);
+                entry.popularity = popularity;
+                authorEntries.put(authorKey, entry);
+                insertKeys(entry);
+            } else {
+                entry.bookIds.add(bookId);
+                entry.popularity += popularity;
+                refresh(entry);
+            }
+            authorKeyByBook.put(bookId, authorKey);
+        }
+    }
+
+    private void remove(Long bookId) {
+        Entry title = titleEntries.remove(bookId);
+        if (title != null) {
+            removeKeys(title);
+        }
+        String authorKey = authorKeyByBook.remove(bookId);
+        if (authorKey != null) {
+            Entry author = authorEntries.get(authorKey);
+            author.bookIds.remove(bookId);
+            if (author.bookIds.isEmpty()) {
+                authorEntries.remove(authorKey);
+                removeKeys(author);
+            } else {
+                author.popularity -= popularityByBook.getOrDefault(bookId, 0L);
+                refresh(author);
+            }
+        }
+    }
+
+    // "harry potter" -> ["harry potter", "potter"]
+    private static List<String> wordSuffixes(List<String> tokens) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            keys.add(String.join(" ", tokens.subList(i, tokens.size())));
+        }
+        return keys;
+    }
+
+    // Độ phổ biến đổi -> sắp lại top-K trên mọi đường đi tới các key của entry
+    private void refresh(Entry entry) {
+        if (bulkLoading) {
+            return;
+        }
+        for (String key : entry.keys) {
+            List<Node> path = pathTo(key);
+            if (path != null) {
+                recomputeTops(path);
+            }
+        }
+    }
+
+    // ----- radix trie -----
+
+    private void insertKeys(Entry entry) {
+        for (String key : entry.keys) {
+            List<Node> path = new ArrayList<>();
+            path.add(root);
+            Node node = root;
+            String rest = key;
+            while (true) {
+                if (rest.isEmpty()) {
+                    if (node.terminals == null) {
+                        node.terminals = new ArrayList<>(1);
+                    }
+                    node.terminals.add(entry);
+                    break;
+                }
+                if (node.children == null) {
+                    node.children = new HashMap<>(4);
+                }
+                Node child = node.children.get(rest.charAt(0));
+                if (child == null) {
+                    Node leaf = new Node(rest);
+                    leaf.terminals = new ArrayList<>(1);
+                    leaf.terminals.add(entry);
+                    node.children.put(rest.charAt(0), leaf);
+                    path.add(leaf);
+                    break;
+                }
+                int common = commonPrefixLength(child.label, rest);
+                if (common < child.label.length()) {
+                    // Tách cạnh: node trung gian giữ phần chung của nhãn
+                    Node middle = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    middle.children = new HashMap<>(4);
+                    middle.children.put(child.label.charAt(0), child);
+                    middle.top = child.top;
+                    node.children.put(middle.label.charAt(0), middle);
+                    child = middle;
+                }
+                path.add(child);
+                node = child;
+                rest = rest.substring(common);
+            }
+            if (!bulkLoading) {
+                recomputeTops(path);
+            }
+        }
+    }
+
+    private void removeKeys(Entry entry) {
+        for (String key : entry.keys) {
+            List<Node> path = pathTo(key);
+            if (path == null) {
+                continue;
+            }
+            Node node = path.get(path.size() - 1);
+            if (node.terminals != null) {
+                node.terminals.remove(entry);
+            }
+            // Cắt các node lá không còn dữ liệu
+            for (int i = path.size() - 1; i > 0; i--) {
+                Node current = path.get(i);
+                boolean empty = (current.terminals == null || current.terminals.isEmpty())
+                        && (current.children == null || current.children.isEmpty());
+                if (!empty) {
+                    break;
+                }
+                path.get(i - 1).children.remove(current.label.charAt(0));
+                path.remove(i);
+            }
+            recomputeTops(path);
+        }
+    }
+
+    // Đường đi từ root tới node có key đúng bằng key, null nếu không có
+    private List<Node> pathTo(String key) {
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        String rest = key;
+        while (!rest.isEmpty()) {
+            Node child = node.children == null ? null : node.children.get(rest.charAt(0));
+            if (child == null || !rest.startsWith(child.label)) {
+                return null;
+            }
+            path.add(child);
+            node = child;
+            rest = rest.substring(child.label.length());
+        }
+        return path;
+    }
+
+    private Entry[] lookup(String prefix) {
+        Node node = root;
+        String rest = prefix;
+        while (!rest.isEmpty()) {
+            Node child = node.children == null ? null : node.children.get(rest.charAt(0));
+            if (child == null) {
+                return new Entry[0];
+            }
+            int common = commonPrefixLength(child.label, rest);
+            if (common == rest.length()) {
+                // prefix kết thúc giữa (hoặc cuối) nhãn của child
+                return child.top;
+            }
+            if (common < child.label.length()) {
+                return new Entry[0];
+            }
+            node = child;
+            rest = rest.substring(common);
+        }
+        return node.top;
+    }
+
+    // Tính lại top-K từ dưới lên: mỗi node gộp terminals của nó với top của các con
+    private void recomputeTops(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            List<Entry> candidates = new ArrayList<>();
+            if (node.terminals != null) {
+                candidates.addAll(node.terminals);
+            }
+            if (node.children != null) {
+                for (Node child : node.children.values()) {
+                    candidates.addAll(Arrays.asList(child.top));
+                }
+            }
+            node.top = candidates.stream()
+                    .distinct()
+                    .sorted(RANKING)
+                    .limit(topK)
+                    .toArray(Entry[]::new);
+        }
+    }
+
+    private void recomputeAll(Node node) {
+        if (node.children != null) {
+            for (Node child : node.children.values()) {
+                recomputeAll(child);
+            }
+        }
+        recomputeTops(List.of(node));
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -1,10 +1,14 @@
 package org.example.prj.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.example.prj.DTO.Response.CacheStatsResponse;
 import org.example.prj.DTO.Response.DashboardResponse;
-import org.example.prj.entity.BookRating;
+import org.example.prj.DTO.Response.RatingBucketResponse;
+import org.example.prj.cache.CatalogCache;
+import org.example.prj.cache.JsonResponseCache;
 import org.example.prj.entity.Count;
 import org.example.prj.entity.Dashboard;
+import org.example.prj.ranking.RatingHistogram;
 import org.example.prj.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -13,7 +17,9 @@ import org.springframework.stereotype.Service;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 
@@ -29,7 +35,11 @@ public class AdminService {
     @Autowired
     private DashBoardRepository dashBoardRepository;
     @Autowired
-    private BookRatingDistributionRepository bookRatingDistributionRepository;
+    private RatingHistogram ratingHistogram;
+    @Autowired
+    private CatalogCache catalogCache;
+    @Autowired
+    private JsonResponseCache jsonResponseCache;
 
     @PreAuthorize("hasAuthority('ROLE_SCOPE_ADMIN')")
     public DashboardResponse getDashboard(){
@@ -56,8 +66,17 @@ public class AdminService {
         return dashboardResponse;
     }
 
-    public List<BookRating> calculateBookRating(){
-        return bookRatingDistributionRepository.findAll();
+    // Hit/miss/eviction của cache catalog, dùng để chỉnh kích thước cache
+    @PreAuthorize("hasAuthority('ROLE_SCOPE_ADMIN')")
+    public Map<String, CacheStatsResponse> getCacheStats() {
+        Map<String, CacheStatsResponse> stats = new LinkedHashMap<>(catalogCache.stats());
+        stats.putAll(jsonResponseCache.stats());
+        return stats;
+    }
+
+    // Đọc từ histogram trong bộ nhớ, không query
+    public List<RatingBucketResponse> calculateBookRating(){
+        return ratingHistogram.snapshot();
     }
 
     public List<Long> monthlyUsers() {
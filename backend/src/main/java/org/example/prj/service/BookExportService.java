@@ -0,0 +1,96 @@
+package org.example.prj.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.example.prj.DTO.Response.BookResponse;
+import org.example.prj.Util.CsvWriter;
+import org.example.prj.exception.AppException;
+import org.example.prj.exception.ErrorCode;
+import org.example.prj.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Xuất catalog ra CSV/NDJSON theo kiểu streaming, cột giống BookRequest để import lại được
+@Slf4j
+@Service
+public class BookExportService {
+    private static final String[] COLUMNS = {"id", "title", "author", "description", "category", "coverImage",
+            "fileUrl", "createdAt", "language", "subject"};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public static boolean isCsv(String format) {
+        return "csv".equalsIgnoreCase(format);
+    }
+
+    // Kiểm tra quyền và định dạng ngay trong request; việc ghi dữ liệu chạy sau, trên luồng async
+    @PreAuthorize("hasAuthority('ROLE_SCOPE_ADMIN')")
+    public StreamingResponseBody exportBooks(String format) {
+        boolean csv = isCsv(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new AppException(ErrorCode.UNSUPPORTED_FORMAT);
+        }
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        return outputStream -> {
+            long start = System.currentTimeMillis();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+            long rows = readOnly.execute(status -> {
+                try (Stream<BookResponse> books = bookRepository.streamAllDetails()) {
+                    return csv ? writeCsv(books.iterator(), writer) : writeNdjson(books.iterator(), writer);
+                } catch (IOException e) {
+                    // Client ngắt kết nối giữa chừng
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            log.info("Exported {} books as {} in {} ms", rows, csv ? "csv" : "ndjson",
+                    System.currentTimeMillis() - start);
+        };
+    }
+
+    private static long writeCsv(Iterator<BookResponse> books, Writer writer) throws IOException {
+        CsvWriter csv = new CsvWriter(writer);
+        csv.writeRow(Arrays.asList(COLUMNS));
+        long rows = 0;
+        while (books.hasNext()) {
+            BookResponse book = books.next();
+            csv.writeRow(Arrays.asList(book.getId(), book.getTitle(), book.getAuthor(), book.getDescription(),
+                    book.getCategory(), book.getCoverImage(), book.getFileUrl(), book.getCreatedAt(),
+                    book.getLanguage(), book.getSubject()));
+            rows++;
+        }
+        return rows;
+    }
+
+    private long writeNdjson(Iterator<BookResponse> books, Writer writer) throws IOException {
+        long rows = 0;
+        while (books.hasNext()) {
+            writer.write(objectMapper.writeValueAsString(books.next()));
+            writer.write('\n');
+            rows++;
+        }
+        return rows;
+    }
+}
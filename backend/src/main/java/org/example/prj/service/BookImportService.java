@@ -0,0 +1,277 @@
+package org.example.prj.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.example.prj.DTO.Request.BookRequest;
+import org.example.prj.DTO.Response.BookImportResponse;
+import org.example.prj.Util.CsvReader;
+import org.example.prj.event.BooksImportedEvent;
+import org.example.prj.exception.AppException;
+import org.example.prj.exception.ErrorCode;
+import org.example.prj.search.DuplicateBookIndex;
+import org.example.prj.search.SearchNormalizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+// Import sách từ CSV/NDJSON: kiểm tra, lọc trùng theo fingerprint, ghi bằng JDBC batch
+@Slf4j
+@Service
+public class BookImportService {
+    public static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_COLUMN_LENGTH = 255;
+    private static final String INSERT_SQL = "INSERT INTO book (title, author, description, category, cover_image, " +
+            "file_url, created_at, language, subject, search_key, fingerprint) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private DuplicateBookIndex duplicateBookIndex;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${book.import.batch-size:1000}")
+    private int batchSize;
+
+    private record PendingRow(long row, BookRequest book, String fingerprint) {
+    }
+
+    // Trạng thái của một lần import
+    private class ImportJob {
+        final BookImportResponse report = new BookImportResponse();
+        final Set<String> seen = new HashSet<>();
+        final List<PendingRow> pending = new ArrayList<>(batchSize);
+    }
+
+    @PreAuthorize("hasAuthority('ROLE_SCOPE_ADMIN')")
+    public BookImportResponse importBooks(InputStream body, String format) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new AppException(ErrorCode.UNSUPPORTED_FORMAT);
+        }
+        long start = System.currentTimeMillis();
+        ImportJob job = new ImportJob();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        try {
+            if (csv) {
+                readCsv(reader, job);
+            } else {
+                readNdjson(reader, job);
+            }
+        } catch (IOException e) {
+            // File hỏng giữa chừng: các lô đã ghi vẫn giữ, báo lỗi tại dòng đang đọc
+            error(job, job.report.getTotal() + 1, "Unreadable input: " + e.getMessage());
+        }
+        flush(job);
+
+        BookImportResponse report = job.report;
+        log.info("Imported {}/{} books ({} duplicates, {} failed) in {} ms", report.getImported(),
+                report.getTotal(), report.getDuplicates(), report.getFailed(), System.currentTimeMillis() - start);
+        if (report.getImported() > 0) {
+            eventPublisher.publishEvent(new BooksImportedEvent((int) report.getImported()));
+        }
+        return report;
+    }
+
+    private void readCsv(BufferedReader reader, ImportJob job) throws IOException {
+        CsvReader csv = new CsvReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            return;
+        }
+        List<String> columns = header.stream()
+                .map(name -> name.replace("_", "").trim().toLowerCase(Locale.ROOT))
+                .toList();
+        if (!columns.contains("title") || !columns.contains("author")) {
+            throw new AppException(ErrorCode.INVALID_IMPORT_FILE);
+        }
+
+        List<String> fields;
+        while ((fields = csv.next()) != null) {
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            long row = job.report.getTotal() + 1;
+            job.report.setTotal(row);
+            BookRequest book = new BookRequest();
+            try {
+                for (int i = 0; i < columns.size() && i < fields.size(); i++) {
+                    setField(book, columns.get(i), fields.get(i));
+                }
+            } catch (DateTimeParseException e) {
+                error(job, row, "Invalid createdAt: " + e.getParsedString());
+                continue;
+            }
+            accept(job, row, book);
+        }
+    }
+
+    private void readNdjson(BufferedReader reader, ImportJob job) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            long row = job.report.getTotal() + 1;
+            job.report.setTotal(row);
+            try {
+                accept(job, row, objectMapper.readValue(line, BookRequest.class));
+            } catch (JsonProcessingException e) {
+                error(job, row, "Invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+    }
+
+    private static void setField(BookRequest book, String column, String value) {
+        String v = value.isBlank() ? null : value.trim();
+        switch (column) {
+            case "title" -> book.setTitle(v);
+            case "author" -> book.setAuthor(v);
+            case "description" -> book.setDescription(v);
+            case "category" -> book.setCategory(v);
+            case "coverimage" -> book.setCoverImage(v);
+            case "fileurl" -> book.setFileUrl(v);
+            case "createdat" -> book.setCreatedAt(parseDateTime(v));
+            case "language" -> book.setLanguage(v);
+            case "subject" -> book.setSubject(v);
+            default -> {
+                // cột không biết thì bỏ qua
+            }
+        }
+    }
+
+    // Chấp nhận 2024-05-01T10:00:00 hoặc chỉ ngày 2024-05-01
+    private static LocalDateTime parseDateTime(String value) {
+        if (value == null) {
+            return null;
+        }
+        return value.length() <= 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value);
+    }
+
+    private void accept(ImportJob job, long row, BookRequest book) {
+        String invalid = validate(book);
+        if (invalid != null) {
+            error(job, row, invalid);
+            return;
+        }
+        String fingerprint = SearchNormalizer.fingerprint(book.getTitle(), book.getAuthor());
+        // Trùng với dòng trước trong file, hoặc với sách đã có (Bloom filter lọc trước, chỉ query khi có thể trùng)
+        if (!job.seen.add(fingerprint) || duplicateBookIndex.exists(fingerprint, null)) {
+            duplicate(job, row);
+            return;
+        }
+        job.pending.add(new PendingRow(row, book, fingerprint));
+        if (job.pending.size() >= batchSize) {
+            flush(job);
+        }
+    }
+
+    private static String validate(BookRequest book) {
+        if (book.getTitle() == null || book.getTitle().isBlank()
+                || book.getAuthor() == null || book.getAuthor().isBlank()) {
+            return "title and author are required";
+        }
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("title", book.getTitle());
+        columns.put("author", book.getAuthor());
+        columns.put("category", book.getCategory());
+        columns.put("coverImage", book.getCoverImage());
+        columns.put("fileUrl", book.getFileUrl());
+        columns.put("language", book.getLanguage());
+        columns.put("subject", book.getSubject());
+        for (Map.Entry<String, String> column : columns.entrySet()) {
+            if (column.getValue() != null && column.getValue().length() > MAX_COLUMN_LENGTH) {
+                return column.getKey() + " is longer than " + MAX_COLUMN_LENGTH + " characters";
+            }
+        }
+        return null;
+    }
+
+    private void flush(ImportJob job) {
+        List<PendingRow> batch = job.pending;
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), BookImportService::bind));
+            job.report.setImported(job.report.getImported() + batch.size());
+            batch.forEach(pendingRow -> duplicateBookIndex.add(pendingRow.fingerprint()));
+        } catch (DataAccessException e) {
+            // Lô bị rollback: chèn lại từng dòng để biết chính xác dòng nào lỗi
+            for (PendingRow pendingRow : batch) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, pendingRow));
+                    job.report.setImported(job.report.getImported() + 1);
+                    duplicateBookIndex.add(pendingRow.fingerprint());
+                } catch (DuplicateKeyException rowError) {
+                    duplicate(job, pendingRow.row());
+                } catch (DataAccessException rowError) {
+                    error(job, pendingRow.row(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        batch.clear();
+    }
+
+    private static void bind(PreparedStatement ps, PendingRow pendingRow) throws SQLException {
+        BookRequest book = pendingRow.book();
+        ps.setString(1, book.getTitle());
+        ps.setString(2, book.getAuthor());
+        ps.setString(3, book.getDescription());
+        ps.setString(4, book.getCategory());
+        ps.setString(5, book.getCoverImage());
+        ps.setString(6, book.getFileUrl());
+        if (book.getCreatedAt() != null) {
+            ps.setObject(7, book.getCreatedAt());
+        } else {
+            ps.setNull(7, Types.TIMESTAMP);
+        }
+        ps.setString(8, book.getLanguage());
+        ps.setString(9, book.getSubject());
+        ps.setString(10, SearchNormalizer.searchKey(book.getTitle(), book.getAuthor(), book.getCategory()));
+        ps.setString(11, pendingRow.fingerprint());
+    }
+
+    private static void duplicate(ImportJob job, long row) {
+        job.report.setDuplicates(job.report.getDuplicates() + 1);
+        addError(job, row, "Duplicate title and author");
+    }
+
+    private void error(ImportJob job, long row, String message) {
+        job.report.setFailed(job.report.getFailed() + 1);
+        addError(job, row, message);
+    }
+
+    private static void addError(ImportJob job, long row, String message) {
+        if (job.report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            job.report.getErrors().add(new BookImportResponse.RowError(row, message));
+        }
+    }
+}
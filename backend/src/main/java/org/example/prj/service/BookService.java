@@ -2,28 +2,60 @@ package org.example.prj.service;
 
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
+import org.example.prj.DTO.Projection.BookRatingView;
+import org.example.prj.DTO.Projection.BookSearchView;
 import org.example.prj.DTO.Request.BookRequest;
 import org.example.prj.DTO.Response.BookDisplayResponse;
 import org.example.prj.DTO.Response.BookResponse;
+import org.example.prj.DTO.Response.CursorPageResponse;
+import org.example.prj.DTO.Response.FacetedBooksResponse;
+import org.example.prj.DTO.Response.SliceResponse;
+import org.example.prj.DTO.Response.SuggestionResponse;
+import org.example.prj.Util.CursorCodec;
+import org.example.prj.Util.CursorPages;
+import org.example.prj.cache.CatalogCache;
 import org.example.prj.entity.Book;
 import org.example.prj.entity.Count;
-import org.example.prj.entity.Review;
+import org.example.prj.event.BookChangedEvent;
+import org.example.prj.event.RatingChangedEvent;
 import org.example.prj.exception.AppException;
 import org.example.prj.exception.ErrorCode;
+import org.example.prj.ranking.TopRatedRanking;
+import org.example.prj.ranking.TrendingRanking;
 import org.example.prj.repository.BookRepository;
 import org.example.prj.repository.CountRepository;
 import org.example.prj.repository.UserRepository;
+import org.example.prj.search.BookSearchIndex;
+import org.example.prj.search.DuplicateBookIndex;
+import org.example.prj.search.FacetIndex;
+import org.example.prj.search.SearchNormalizer;
+import org.example.prj.search.SuggestionIndex;
+import org.example.prj.storage.BookFileStorage;
+import org.example.prj.storage.CoverImageStorage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 
 @Service
@@ -31,46 +63,178 @@ import java.util.concurrent.atomic.AtomicLong;
 public class BookService {
     @Autowired
     private BookRepository bookRepository;
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+    @Autowired
+    private SuggestionIndex suggestionIndex;
+    @Autowired
+    private FacetIndex facetIndex;
+    @Autowired
+    private CatalogCache catalogCache;
+    @Autowired
+    private DuplicateBookIndex duplicateBookIndex;
+    @Autowired
+    private TrendingRanking trendingRanking;
+    @Autowired
+    private TopRatedRanking topRatedRanking;
+    @Autowired
+    private BookFileStorage bookFileStorage;
+    @Autowired
+    private CoverImageStorage coverImageStorage;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 //    @Autowired
 //    private CountRepository countRepository;
 
+    // Kích thước trang tối đa cho các API công khai
+    @Value("${book.page.max-size:100}")
+    private int maxPageSize;
+
     public BookResponse getBook(Long bookId) {
-        Book book = bookRepository.getBookById(bookId)
-                .orElseThrow(()->new AppException(ErrorCode.BOOK_NOT_FOUND));
-        return BookResponse.builder()
-                .id(book.getId())
-                .title(book.getTitle())
-                .author(book.getAuthor())
-                .description(book.getDescription())
-                .category(book.getCategory())
-                .coverImage(book.getCoverImage())
-                .fileUrl(book.getFileUrl())
-                .createdAt(book.getCreatedAt())
-                .language(book.getLanguage())
-                .subject(book.getSubject())
-                .build();
+        BookResponse book = catalogCache.getDetail(bookId, () -> bookRepository.findDetailById(bookId)
+                .orElseThrow(()->new AppException(ErrorCode.BOOK_NOT_FOUND)));
+        // Chỉ tính lượt xem cho sách có thật, id bịa không được tạo điểm
+        trendingRanking.recordView(bookId);
+        return book;
     }
 
     public Page<BookDisplayResponse> getListBooks(Integer page, Integer size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<Book> books = bookRepository.findAll(pageable);
-
-        return books.map(book -> new BookDisplayResponse(book.getId(),book.getTitle(),book.getAuthor(),
-                book.getDescription(),book.getCoverImage()));
+        return catalogCache.getList(page, size, () -> bookRepository.findCards(pageable));
     }
 
-    public Page<BookDisplayResponse> getListBooksByTitle(String title, Integer page, Integer size) {
+    public Page<BookDisplayResponse> getListBooksByTitle(String title, boolean fuzzy, Integer page, Integer size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<Book> books = bookRepository.findByTitle(title,pageable);
-        return books.map(book -> new BookDisplayResponse(book.getId(),book.getTitle(),book.getAuthor(),
-                book.getDescription(),book.getCoverImage()));
+        // Index chưa dựng xong (lúc khởi động) thì quay về query cũ
+        if (!bookSearchIndex.isReady()) {
+            String query = SearchNormalizer.fullTextQuery(title);
+            return query.isEmpty() ? bookRepository.findCards(pageable)
+                    : bookRepository.findCardsBySearchKey(query, pageable);
+        }
+        return catalogCache.getSearch(title, fuzzy, page, size, () -> {
+            List<Long> ids = fuzzy ? bookSearchIndex.fuzzySearch(title) : bookSearchIndex.search(title);
+            return toPage(ids, pageable);
+        });
+    }
+
+    // Danh sách xếp hạng đã tính sẵn trong bộ nhớ, chỉ load card của các sách trong danh sách
+    public List<BookDisplayResponse> getTrending(Integer limit) {
+        return loadDisplayResponses(trendingRanking.top(limit));
+    }
+
+    public List<BookDisplayResponse> getTopRated(Integer limit) {
+        return loadDisplayResponses(topRatedRanking.top(limit));
+    }
+
+    public List<SuggestionResponse> suggest(String query, Integer limit) {
+        return suggestionIndex.suggest(query, limit);
+    }
+
+    // Cho infinite scroll: chỉ cần biết còn trang sau hay không, bỏ câu COUNT
+    public SliceResponse<BookDisplayResponse> getListBooksSlice(Integer page, Integer size, boolean withTotal) {
+        Slice<BookDisplayResponse> books = bookRepository.findCardSlice(slicePage(page, size));
+        Long total = (withTotal && bookSearchIndex.isReady()) ? (long) bookSearchIndex.size() : null;
+        return toSliceResponse(books, total);
+    }
+
+    public SliceResponse<BookDisplayResponse> getListBooksByTitleSlice(String title, boolean fuzzy, Integer page,
+                                                                       Integer size, boolean withTotal) {
+        Pageable pageable = slicePage(page, size);
+        if (!bookSearchIndex.isReady()) {
+            String query = SearchNormalizer.fullTextQuery(title);
+            Slice<BookDisplayResponse> books = query.isEmpty() ? bookRepository.findCardSlice(pageable)
+                    : bookRepository.findCardSliceBySearchKey(query, pageable);
+            return toSliceResponse(books, null);
+        }
+        // Index đã biết tổng số kết quả nên không tốn thêm gì để trả về
+        List<Long> ids = fuzzy ? bookSearchIndex.fuzzySearch(title) : bookSearchIndex.search(title);
+        Page<BookDisplayResponse> books = toPage(ids, pageable);
+        return toSliceResponse(books, withTotal ? books.getTotalElements() : null);
+    }
+
+    // Giới hạn size như các endpoint cursor, page âm trả 400 thay vì lỗi 500 của PageRequest
+    private Pageable slicePage(Integer page, Integer size) {
+        int pageSize = CursorPages.checkSize(size, maxPageSize);
+        if (page == null || page < 0) {
+            throw new AppException(ErrorCode.INVALID_PAGE);
+        }
+        return PageRequest.of(page, pageSize);
+    }
+
+    private SliceResponse<BookDisplayResponse> toSliceResponse(Slice<BookDisplayResponse> slice, Long total) {
+        return SliceResponse.<BookDisplayResponse>builder()
+                .content(slice.getContent())
+                .page(slice.getNumber())
+                .size(slice.getNumberOfElements())
+                .hasNext(slice.hasNext())
+                .approximateTotal(total)
+                .build();
+    }
+
+    // Phân trang theo cursor (keyset), trang sâu vẫn nhanh như trang đầu
+    public CursorPageResponse<BookDisplayResponse> getListBooksAfter(String cursor, Integer size) {
+        int pageSize = CursorPages.checkSize(size, maxPageSize);
+        Long lastId = CursorCodec.decode(cursor);
+        return CursorPages.of(bookRepository.findCardsAfter(lastId, PageRequest.of(0, pageSize + 1)), pageSize,
+                BookDisplayResponse::getId);
+    }
+
+    public CursorPageResponse<BookDisplayResponse> getListBooksByTitleAfter(String title, String cursor, Integer size) {
+        int pageSize = CursorPages.checkSize(size, maxPageSize);
+        Long lastId = CursorCodec.decode(cursor);
+        if (!bookSearchIndex.isReady()) {
+            String query = SearchNormalizer.fullTextQuery(title);
+            Pageable pageable = PageRequest.of(0, pageSize + 1);
+            return CursorPages.of(query.isEmpty() ? bookRepository.findCardsAfter(lastId, pageable)
+                    : bookRepository.findCardsBySearchKeyAfter(query, lastId, pageable), pageSize,
+                    BookDisplayResponse::getId);
+        }
+        // Kết quả index đã sắp theo id: tìm vị trí ngay sau lastId bằng binary search
+        List<Long> ids = bookSearchIndex.search(title);
+        int pos = Collections.binarySearch(ids, lastId);
+        int start = pos >= 0 ? pos + 1 : -pos - 1;
+        int end = Math.min(start + pageSize + 1, ids.size());
+        return CursorPages.of(loadDisplayResponses(ids.subList(start, end)), pageSize, BookDisplayResponse::getId);
+    }
+
+    // Lọc theo facet + đếm số sách cho từng giá trị facet trong cùng một request
+    public FacetedBooksResponse browse(String keyword, Map<String, String> filters, Integer page, Integer size) {
+        size = Math.max(1, Math.min(size, maxPageSize));
+        Pageable pageable = PageRequest.of(Math.max(0, page), size);
+        List<Long> candidates = (keyword == null || keyword.isBlank()) ? null : bookSearchIndex.search(keyword);
+        FacetIndex.FacetResult result = facetIndex.browse(candidates, filters, pageable.getOffset(), size);
+        return FacetedBooksResponse.builder()
+                .books(new PageImpl<>(loadDisplayResponses(result.getPageIds()), pageable, result.getTotal()))
+                .facets(result.getCounts())
+                .build();
+    }
+
+    // Cắt trang trên danh sách id từ index, chỉ load đúng các sách của trang đó theo khóa chính
+    private Page<BookDisplayResponse> toPage(List<Long> ids, Pageable pageable) {
+        int start = (int) Math.min(pageable.getOffset(), ids.size());
+        int end = Math.min(start + pageable.getPageSize(), ids.size());
+        return new PageImpl<>(loadDisplayResponses(ids.subList(start, end)), pageable, ids.size());
+    }
+
+    // Load card theo khóa chính và giữ nguyên thứ tự id truyền vào
+    private List<BookDisplayResponse> loadDisplayResponses(List<Long> pageIds) {
+        if (pageIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, BookDisplayResponse> cards = bookRepository.findCardsByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(BookDisplayResponse::getId, Function.identity()));
+        return pageIds.stream()
+                .map(cards::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     @PreAuthorize("hasAuthority('ROLE_SCOPE_ADMIN')")
     @Transactional
     public BookResponse addBook(BookRequest bookRequest) {
-        if(bookRepository.existsByTitle(bookRequest.getTitle()) &&
-        bookRepository.existsByAuthor(bookRequest.getAuthor())){
+        // Bloom filter trả lời "chắc chắn chưa có" cho hầu hết sách mới, không cần query
+        String fingerprint = SearchNormalizer.fingerprint(bookRequest.getTitle(), bookRequest.getAuthor());
+        if(duplicateBookIndex.exists(fingerprint, null)){
             throw  new AppException(ErrorCode.BOOK_EXISTED);
         }
         Book book = Book.builder()
@@ -83,22 +247,15 @@ public class BookService {
                 .createdAt(bookRequest.getCreatedAt())
                 .language(bookRequest.getLanguage())
                 .subject(bookRequest.getSubject())
+                .searchKey(SearchNormalizer.searchKey(bookRequest.getTitle(),
+                        bookRequest.getAuthor(), bookRequest.getCategory()))
+                .fingerprint(fingerprint)
                 .build();
-        Book savedBook = bookRepository.save(book);
-
-        return BookResponse.builder()
-                .id(savedBook.getId())
-                .title(savedBook.getTitle())
-                .author(savedBook.getAuthor())
-                .description(savedBook.getDescription())
-                .category(savedBook.getCategory())
-                .coverImage(savedBook.getCoverImage())
-                .fileUrl(savedBook.getFileUrl())
-                .createdAt(savedBook.getCreatedAt())
-                .language(savedBook.getLanguage())
-                .subject(savedBook.getSubject())
-                .build();
+        Book savedBook = saveUnique(book);
+        duplicateBookIndex.add(fingerprint);
+        eventPublisher.publishEvent(BookChangedEvent.created(savedBook));
 
+        return toBookResponse(savedBook);
     }
 
     @PreAuthorize("hasAuthority('ROLE_SCOPE_ADMIN')")
@@ -106,6 +263,16 @@ public class BookService {
     public BookResponse editBook(BookRequest bookRequest,Long  bookId) {
         Book book = bookRepository.getBookById(bookId)
                 .orElseThrow(() -> new AppException(ErrorCode.BOOK_NOT_FOUND));
+        String previousSearchKey = book.getSearchKey();
+        String fingerprint = SearchNormalizer.fingerprint(bookRequest.getTitle(), bookRequest.getAuthor());
+        if (!fingerprint.equals(book.getFingerprint()) && duplicateBookIndex.exists(fingerprint, bookId)) {
+            throw new AppException(ErrorCode.BOOK_EXISTED);
+        }
+
+        // Ảnh bìa đổi: bỏ thumbnail cũ, CoverImageStorage tạo lại sau khi commit
+        if (!Objects.equals(book.getCoverImage(), bookRequest.getCoverImage())) {
+            book.setCoverThumbnail(null);
+        }
 
         // cập nhật các thuộc tính
         book.setTitle(bookRequest.getTitle());
@@ -117,9 +284,43 @@ public class BookService {
         book.setCreatedAt(bookRequest.getCreatedAt());
         book.setLanguage(bookRequest.getLanguage());
         book.setSubject(bookRequest.getSubject());
+        book.setSearchKey(SearchNormalizer.searchKey(book.getTitle(), book.getAuthor(), book.getCategory()));
+        book.setFingerprint(fingerprint);
+
+        saveUnique(book);
+        duplicateBookIndex.add(fingerprint);
+        eventPublisher.publishEvent(BookChangedEvent.updated(book, previousSearchKey));
 
+        return toBookResponse(book);
+    }
+
+    // Upload file PDF/EPUB lên server, fileUrl trỏ về /book/files/{sha256}.{ext}
+    @PreAuthorize("hasAuthority('ROLE_SCOPE_ADMIN')")
+    @Transactional
+    public BookResponse uploadBookFile(Long bookId, MultipartFile file) {
+        Book book = bookRepository.getBookById(bookId)
+                .orElseThrow(() -> new AppException(ErrorCode.BOOK_NOT_FOUND));
+        book.setFileUrl(bookFileStorage.store(file));
         bookRepository.save(book);
+        eventPublisher.publishEvent(BookChangedEvent.updated(book, book.getSearchKey()));
+        return toBookResponse(book);
+    }
 
+    // Upload ảnh bìa: lưu ảnh gốc + thumbnail, coverImage trỏ về /book/covers/{sha256}.{ext}
+    @PreAuthorize("hasAuthority('ROLE_SCOPE_ADMIN')")
+    @Transactional
+    public BookResponse uploadCover(Long bookId, MultipartFile file) {
+        Book book = bookRepository.getBookById(bookId)
+                .orElseThrow(() -> new AppException(ErrorCode.BOOK_NOT_FOUND));
+        CoverImageStorage.StoredCover cover = coverImageStorage.store(file);
+        book.setCoverImage(cover.imageUrl());
+        book.setCoverThumbnail(cover.thumbnailUrl());
+        bookRepository.save(book);
+        eventPublisher.publishEvent(BookChangedEvent.updated(book, book.getSearchKey()));
+        return toBookResponse(book);
+    }
+
+    private static BookResponse toBookResponse(Book book) {
         return BookResponse.builder()
                 .id(book.getId())
                 .title(book.getTitle())
@@ -134,28 +335,52 @@ public class BookService {
                 .build();
     }
 
+    // Hai admin thêm cùng một sách cùng lúc: cả hai qua được bước kiểm tra, unique key chặn người sau
+    private Book saveUnique(Book book) {
+        try {
+            return bookRepository.saveAndFlush(book);
+        } catch (DataIntegrityViolationException e) {
+            throw new AppException(ErrorCode.BOOK_EXISTED);
+        }
+    }
+
     @PreAuthorize("hasAuthority('ROLE_SCOPE_ADMIN')")
     public void deleteBook(Long bookId) {
+        String previousSearchKey = bookRepository.findSearchKeyById(bookId).orElse(null);
+        BookRatingView rating = bookRepository.findRatingById(bookId).orElse(null);
         bookRepository.deleteById(bookId);
+        eventPublisher.publishEvent(BookChangedEvent.deleted(bookId, previousSearchKey));
+        // Review bị xóa theo sách: báo để histogram bỏ sách này ra khỏi bucket cũ
+        if (rating != null && rating.getRatingCount() > 0) {
+            eventPublisher.publishEvent(new RatingChangedEvent(bookId, rating.getRatingSum(),
+                    rating.getRatingCount(), 0, 0));
+        }
         log.info("Delete Successfull");
     }
 
+    // Tính search_key cho các sách được thêm trước khi có cột này
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillSearchKeys() {
+        int updated = 0;
+        List<BookSearchView> rows;
+        do {
+            rows = bookRepository.findSearchViewsWithoutSearchKey(PageRequest.of(0, 500));
+            for (BookSearchView row : rows) {
+                bookRepository.updateSearchKey(row.getId(),
+                        SearchNormalizer.searchKey(row.getTitle(), row.getAuthor(), row.getCategory()));
+            }
+            updated += rows.size();
+        } while (!rows.isEmpty());
+        if (updated > 0) {
+            log.info("Backfilled search_key for {} books", updated);
+        }
+    }
+
 //    @PreAuthorize("isAuthenticated()")
     public Double displayRating(Long id) {
-        return bookRepository.findById(id)
-                .map(book -> {
-                    List<Review> reviews = book.getReviews();
-                    if (reviews == null || reviews.isEmpty()) {
-                        return 0.0;
-                    }
-
-                    double average = reviews.stream()
-                            .mapToDouble(Review::getRating)
-                            .average()
-                            .orElse(0.0);
-
-                    return average;
-                })
+        // ratingSum/ratingCount được cập nhật mỗi lần đánh giá: chỉ đọc 1 dòng theo khóa chính
+        return bookRepository.findRatingById(id)
+                .map(rating -> rating.getRatingCount() == 0 ? 0.0 : rating.getRatingSum() / rating.getRatingCount())
                 .orElse(0.0);
     }
 
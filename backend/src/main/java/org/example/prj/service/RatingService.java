@@ -0,0 +1,85 @@
+package org.example.prj.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.prj.DTO.Projection.BookRatingView;
+import org.example.prj.DTO.Response.BookRatingResponse;
+import org.example.prj.event.RatingChangedEvent;
+import org.example.prj.event.RatingsReconciledEvent;
+import org.example.prj.exception.AppException;
+import org.example.prj.exception.ErrorCode;
+import org.example.prj.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Tính lại ratingSum/ratingCount từ bảng review theo từng khoảng id (lúc khởi động và hằng đêm)
+@Service
+@Slf4j
+public class RatingService {
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${book.rating.reconcile-chunk-size:1000}")
+    private int chunkSize;
+    @Value("${book.rating.max-batch-ids:100}")
+    private int maxBatchIds;
+
+    // Cộng thay đổi vào tổng điểm trong transaction hiện tại, dòng sách bị khóa nên giá trị đọc lại là chính xác
+    public void applyRating(Long bookId, double sumDelta, long countDelta) {
+        if (bookRepository.addRating(bookId, sumDelta, countDelta) == 0) {
+            return;
+        }
+        bookRepository.findRatingById(bookId).ifPresent(rating -> eventPublisher.publishEvent(new RatingChangedEvent(
+                bookId, rating.getRatingSum() - sumDelta, rating.getRatingCount() - countDelta,
+                rating.getRatingSum(), rating.getRatingCount())));
+    }
+
+    // Rating của cả trang sách trong 1 query, giữ thứ tự ids; id không tồn tại thì bỏ qua
+    public List<BookRatingResponse> getRatings(List<Long> ids) {
+        Set<Long> uniqueIds = new LinkedHashSet<>(ids);
+        uniqueIds.remove(null);
+        if (uniqueIds.size() > maxBatchIds) {
+            throw new AppException(ErrorCode.TOO_MANY_IDS);
+        }
+        if (uniqueIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, BookRatingView> ratings = bookRepository.findRatingsByIdIn(uniqueIds).stream()
+                .collect(Collectors.toMap(BookRatingView::getId, Function.identity()));
+        return uniqueIds.stream()
+                .map(ratings::get)
+                .filter(Objects::nonNull)
+                .map(rating -> BookRatingResponse.builder()
+                        .bookId(rating.getId())
+                        .average(rating.getRatingCount() == 0 ? 0.0 : rating.getRatingSum() / rating.getRatingCount())
+                        .count(rating.getRatingCount())
+                        .build())
+                .toList();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${book.rating.reconcile-cron:0 30 3 * * *}")
+    public void reconcileRatings() {
+        long start = System.currentTimeMillis();
+        long maxId = bookRepository.findMaxId();
+        for (long fromId = 0; fromId < maxId; fromId += chunkSize) {
+            bookRepository.reconcileRatings(fromId, fromId + chunkSize);
+        }
+        eventPublisher.publishEvent(new RatingsReconciledEvent());
+        log.info("Reconciled rating aggregates up to book {} in {} ms", maxId, System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.prj.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.prj.constant.StatusBook;
+import org.example.prj.entity.UserShelfStats;
+import org.example.prj.repository.FavouriteRepository;
+import org.example.prj.repository.UserShelfStatsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Số sách theo trạng thái của từng user và số sách trong từng thư mục yêu thích, job repair đếm lại
+@Service
+@Slf4j
+public class ShelfStatsService {
+    @Autowired
+    private UserShelfStatsRepository userShelfStatsRepository;
+    @Autowired
+    private FavouriteRepository favouriteRepository;
+
+    @Value("${shelf.stats.repair-chunk-size:1000}")
+    private int chunkSize;
+
+    // previous == null: sách mới thêm vào kệ; current == null: sách bị bỏ khỏi kệ
+    public void onStatusChanged(Long userId, StatusBook previous, StatusBook current) {
+        if (previous == current) {
+            return;
+        }
+        addCounts(userId, delta(StatusBook.WANT, previous, current), delta(StatusBook.READING, previous, current),
+                delta(StatusBook.COMPLETED, previous, current));
+    }
+
+    // Cộng nhiều thay đổi một lần (thao tác hàng loạt trên bookshelf)
+    public void addCounts(Long userId, long want, long reading, long completed) {
+        if (want == 0 && reading == 0 && completed == 0) {
+            return;
+        }
+        if (userShelfStatsRepository.addCounts(userId, want, reading, completed) == 0) {
+            // User mới chưa có dòng: đếm trực tiếp (đã gồm thay đổi vừa flush) rồi tạo dòng
+            userShelfStatsRepository.save(UserShelfStats.builder()
+                    .userId(userId)
+                    .wantCount(userShelfStatsRepository.countWant(userId))
+                    .readingCount(userShelfStatsRepository.countReading(userId))
+                    .completedCount(userShelfStatsRepository.countCompleted(userId))
+                    .build());
+        }
+    }
+
+    private static long delta(StatusBook status, StatusBook previous, StatusBook current) {
+        return (status == current ? 1 : 0) - (status == previous ? 1 : 0);
+    }
+
+    public long count(Long userId, StatusBook status) {
+        return userShelfStatsRepository.findById(userId)
+                .map(stats -> switch (status) {
+                    case WANT -> stats.getWantCount();
+                    case READING -> stats.getReadingCount();
+                    case COMPLETED -> stats.getCompletedCount();
+                })
+                .orElse(0L);
+    }
+
+    public void onFavouriteChanged(Long folderId, int delta) {
+        favouriteRepository.addBookCount(folderId, delta);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${shelf.stats.repair-cron:0 0 4 * * *}")
+    public void repair() {
+        long start = System.currentTimeMillis();
+        userShelfStatsRepository.insertMissing();
+        long maxUserId = userShelfStatsRepository.findMaxUserId();
+        for (long fromId = 0; fromId < maxUserId; fromId += chunkSize) {
+            userShelfStatsRepository.recount(fromId, fromId + chunkSize);
+        }
+        long maxFolderId = favouriteRepository.findMaxId();
+        for (long fromId = 0; fromId < maxFolderId; fromId += chunkSize) {
+            favouriteRepository.recountBooks(fromId, fromId + chunkSize);
+        }
+        log.info("Repaired shelf counters for users up to {} and folders up to {} in {} ms",
+                maxUserId, maxFolderId, System.currentTimeMillis() - start);
+    }
+}
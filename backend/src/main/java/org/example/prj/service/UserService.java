@@ -1,32 +1,47 @@
 package org.example.prj.service;
 
 import jakarta.transaction.Transactional;
+import org.example.prj.DTO.Projection.ShelfBookView;
+import org.example.prj.DTO.Request.BookshelfBulkRequest;
 import org.example.prj.DTO.Request.TilteFolder;
 import org.example.prj.DTO.Response.BookDisplayResponse;
 import org.example.prj.DTO.Response.BookResponse;
+import org.example.prj.DTO.Response.BookshelfBulkResponse;
+import org.example.prj.DTO.Response.CursorPageResponse;
 import org.example.prj.DTO.Response.ListUserResponse;
+import org.example.prj.Util.CursorCodec;
+import org.example.prj.Util.CursorPages;
+import org.example.prj.configuration.CurrentPrincipal;
 import org.example.prj.constant.StatusBook;
 import org.example.prj.entity.*;
+import org.example.prj.event.BookshelfChangedEvent;
 import org.example.prj.exception.AppException;
 import org.example.prj.exception.ErrorCode;
 import org.example.prj.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.sql.Statement;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class UserService {
+    // Dựa vào unique (bookshelf_id, book_id): số dòng bị ảnh hưởng 1 = thêm mới, 2 = đổi trạng thái
+    private static final String BULK_UPSERT_SQL =
+            "INSERT INTO bookshelf_item (status, bookshelf_id, book_id) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE status = VALUES(status)";
+
     @Autowired
     private UserRepository userRepository;
     @Autowired
@@ -39,68 +54,69 @@ public class UserService {
     private BookshelfItemRepository bookshelfItemRepository;
     @Autowired
     private BookshelfRepository bookshelfRepository;
+    @Autowired
+    private RatingService ratingService;
+    @Autowired
+    private ShelfStatsService shelfStatsService;
+    @Autowired
+    private CurrentPrincipal currentPrincipal;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${shelf.bulk.max-items:1000}")
+    private int maxBulkItems;
+    @Value("${book.page.max-size:100}")
+    private int maxPageSize;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
 
     @PreAuthorize("hasAuthority('ROLE_SCOPE_ADMIN')")
     public List<ListUserResponse> getListUsers(Integer page, Integer size) {
         Pageable pageable = PageRequest.of(page, size);
-        Page<User> users = userRepository.findAll(pageable);
-
-        return users.stream()
-                .map(user -> {
-                    ListUserResponse listUserResponse = new ListUserResponse();
-                    listUserResponse.setId(user.getId());
-                    listUserResponse.setUsername(user.getUsername());
-                    listUserResponse.setEmail(user.getEmail());
-                    listUserResponse.setActive(user.isActive());
-                    listUserResponse.setCreatedAt(user.getCreatedAt());
-
-                    Long want = countBook("WANT", user, null);
-                    listUserResponse.setWantQuantity(want);
-
-                    Long reading = countBook("READING", user, null);
-                    listUserResponse.setReadingQuantity(reading);
-
-                    Long completed = countBook("COMPLETED", user, null);
-                    listUserResponse.setCompletedQuantity(completed);
+        return userRepository.findUserSummaries(pageable);
+    }
 
-                    return listUserResponse;
-                })
-                .toList();
+    // Phân trang theo cursor cho trang admin, không cần OFFSET
+    @PreAuthorize("hasAuthority('ROLE_SCOPE_ADMIN')")
+    public CursorPageResponse<ListUserResponse> getListUsersAfter(String cursor, Integer size) {
+        int pageSize = CursorPages.checkSize(size, maxPageSize);
+        Long lastId = CursorCodec.decode(cursor);
+        List<ListUserResponse> rows = userRepository.findUserSummariesAfter(lastId, PageRequest.of(0, pageSize + 1));
+        return CursorPages.of(rows, pageSize, ListUserResponse::getId);
     }
 
 
     @PreAuthorize("isAuthenticated()")
+    @Transactional
     public String addReviewBook(Long bookId, double point) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         System.out.println("________________________________________________________________________");
         System.out.println("Authorities: " + auth.getAuthorities());
 
-        var username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        Book book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new RuntimeException("Book not found"));
-
-        Review review = user.getReviews().stream()
-                .filter(r -> r.getBook().getId().equals(bookId))
-                .findFirst()
-                .orElse(null);
+        Long userId = currentPrincipal.getUserId();
+        if (!bookRepository.existsById(bookId)) {
+            throw new RuntimeException("Book not found");
+        }
 
-        if (review == null) {
-            review = new Review();
-            review.setUser(user);
-            review.setBook(book);
+        // Phần chênh lệch cộng vào ratingSum/ratingCount của sách
+        double sumDelta;
+        long countDelta;
+        List<Double> ratings = reviewRepository.lockRatingsByBookIdAndUserId(bookId, userId);
+        if (ratings.isEmpty()) {
+            Review review = new Review();
+            review.setUser(currentPrincipal.getUserReference());
+            review.setBook(bookRepository.getReferenceById(bookId));
             review.setRating(point);
+            reviewRepository.save(review);
+            sumDelta = point;
+            countDelta = 1;
         } else {
-            review.setRating(point);
-        }
-
-        reviewRepository.save(review);
-
-        if (!user.getReviews().contains(review)) {
-            user.getReviews().add(review);
+            reviewRepository.updateRating(bookId, userId, point);
+            sumDelta = point * ratings.size() - ratings.stream().mapToDouble(Double::doubleValue).sum();
+            countDelta = 0;
         }
+        ratingService.applyRating(bookId, sumDelta, countDelta);
 
         return "Feedback successfully! Rating: " + point;
     }
@@ -110,91 +126,69 @@ public class UserService {
         if(favouriteRepository.existsByTitle(tilteFolder.getTitle())) {
             throw new AppException(ErrorCode.FOLDER_EXISTED);
         }
-        var username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username).get();
         FavouriteBooks favouriteBooks = new FavouriteBooks();
         favouriteBooks.setTitle(tilteFolder.getTitle());
-        favouriteBooks.setUser(user);
+        favouriteBooks.setUser(currentPrincipal.getUserReference());
 //        favouriteBooks.setBook(book);
-        user.getFavouriteBooks().add(favouriteBooks);
         favouriteRepository.save(favouriteBooks);
         return "Create Successful:" + tilteFolder.getTitle() + " ";
     }
 
     @PreAuthorize("hasAuthority('ROLE_SCOPE_USER')")
     public Double getReviewBook(Long bookId) {
-        var username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username).get();
-        Double point = reviewRepository.findRatingByBookIdAndUserId(bookId,user.getId());
+        Double point = reviewRepository.findRatingByBookIdAndUserId(bookId, currentPrincipal.getUserId());
         if(point==null) return 0.0;
         return point;
     }
 
     @PreAuthorize("hasAuthority('ROLE_SCOPE_USER')")
+    @Transactional
     public String addFB(Long bookId,Long listId){
-        var username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username).get();
-        FavouriteBooks favouriteBooks = user.getFavouriteBooks().stream()
-                .filter(f -> f.getId().equals(listId))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Favourite list not found"));
+        if (!favouriteRepository.existsByIdAndUserId(listId, currentPrincipal.getUserId())) {
+            throw new RuntimeException("Favourite list not found");
+        }
         Book book = bookRepository.findById(bookId).get();
-        if (favouriteBooks.getBooks().contains(book)) {
+        if (favouriteRepository.countBookInFolder(listId, bookId) > 0) {
             return "Book already in favourite list.";
         }
-        favouriteBooks.getBooks().add(book);
-        favouriteRepository.save(favouriteBooks);
+        favouriteRepository.addBook(listId, bookId);
+        shelfStatsService.onFavouriteChanged(listId, 1);
         return "Add Successful:" + book.getTitle();
     }
 
 //
     @PreAuthorize("isAuthenticated()")
     public List<TilteFolder> getFBFolder() {
-        var username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        List<FavouriteBooks> favouriteBooks = user.getFavouriteBooks();
-        List<TilteFolder> folders = favouriteBooks.stream()
-                .map(fb -> TilteFolder.builder()
-                        .title(fb.getTitle())
-                        .id(fb.getId())
-                        .count(countBook("FB",user,fb.getId()))
-                        .build())
-                .toList();
-
-        return folders;
+        return favouriteRepository.findFoldersByUserId(currentPrincipal.getUserId());
     }
 
     @PreAuthorize("hasAuthority('ROLE_SCOPE_USER')")
     @Transactional
     public String deleteRatingBook(Long bookId) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username).get();
-        userRepository.deleteRatingBook(bookId,user.getId());
-        return "Delete Successful:" + bookId +" of "+ user.getId();
+        Long userId = currentPrincipal.getUserId();
+        List<Double> ratings = reviewRepository.lockRatingsByBookIdAndUserId(bookId, userId);
+        userRepository.deleteRatingBook(bookId, userId);
+        if (!ratings.isEmpty()) {
+            double sum = ratings.stream().mapToDouble(Double::doubleValue).sum();
+            ratingService.applyRating(bookId, -sum, -ratings.size());
+        }
+        return "Delete Successful:" + bookId +" of "+ userId;
     }
 
     @PreAuthorize("hasAuthority('ROLE_SCOPE_USER')")
     @Transactional
     public String deleteStatusBook(Long bookId) {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        Bookshelf bookshelf = user.getBookshelf();
-
-        BookshelfItem bookshelfItem = bookshelf.getItems().stream()
-                .filter(item -> item.getBook().getId().equals(bookId))
-                .findFirst()
+        Long userId = currentPrincipal.getUserId();
+        Long shelfId = bookshelfRepository.findIdByUserId(userId)
+                .orElseThrow(() -> new RuntimeException("Book not found in bookshelf"));
+        StatusBook status = bookshelfItemRepository.findStatus(shelfId, bookId)
                 .orElseThrow(() -> new RuntimeException("Book not found in bookshelf"));
 
-        bookshelf.getItems().remove(bookshelfItem);
-
-        bookshelfItem.setBookshelf(null);
-
-        bookshelfRepository.save(bookshelf);
+        // Chỉ trừ bộ đếm khi thực sự xóa được (request đồng thời có thể đã xóa trước)
+        if (bookshelfItemRepository.deleteItem(shelfId, bookId) > 0) {
+            shelfStatsService.onStatusChanged(userId, status, null);
+            eventPublisher.publishEvent(new BookshelfChangedEvent(bookId, -1));
+        }
 
         return "Deleted book from bookshelf successfully. " + bookId;
     }
@@ -203,47 +197,22 @@ public class UserService {
 
     @PreAuthorize("isAuthenticated()")
     public Long countBookByStautus(String status){
-        var username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        Long count = countBook(status,user,null);
-        return count;
+        return shelfStatsService.count(currentPrincipal.getUserId(), StatusBook.valueOf(status));
     }
 
     @PreAuthorize("isAuthenticated()")
     public String deleteFBfolder(Long id){
-        var username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        user.getFavouriteBooks().removeIf(fb -> fb.getId().equals(id));
-        userRepository.save(user);
+        favouriteRepository.findByIdAndUserId(id, currentPrincipal.getUserId())
+                .ifPresent(favouriteRepository::delete);
         return "Delete Successful:" + id;
     }
 
     @PreAuthorize("hasAuthority('ROLE_SCOPE_USER')")
     public List<BookDisplayResponse> getFB(Long Id, Integer page, Integer size) {
-        FavouriteBooks favourite = favouriteRepository.findById(Id)
-                .orElseThrow(() -> new RuntimeException("Favourite not found"));
-
-        Pageable pageable = PageRequest.of(page, size);
-
-        List<Book> books = favourite.getBooks();
-        int start = (int) pageable.getOffset();
-        int end = Math.min(start + pageable.getPageSize(), books.size());
-
-        List<Book> pagedBooks = books.subList(start, end);
-
-        return pagedBooks.stream()
-                .map(book -> new BookDisplayResponse(
-                        book.getId(),
-                        book.getTitle(),
-                        book.getAuthor(),
-                        book.getDescription(),
-                        book.getCoverImage()
-                ))
-                .toList();
+        if (!favouriteRepository.existsByIdAndUserId(Id, currentPrincipal.getUserId())) {
+            throw new AppException(ErrorCode.LIST_NOT_FOUND);
+        }
+        return favouriteRepository.findCardsByFolderId(Id, PageRequest.of(page, size));
 
 //        FavouriteBooks favouriteBooks = favouriteRepository.findById(favouriteListId)
 //                .orElseThrow(() -> new RuntimeException("Favourite list not found"));
@@ -271,154 +240,210 @@ public class UserService {
 //                .toList();
     }
 
+    @PreAuthorize("hasAuthority('ROLE_SCOPE_USER')")
+    public CursorPageResponse<BookDisplayResponse> getFBAfter(Long Id, String cursor, Integer size) {
+        int pageSize = CursorPages.checkSize(size, maxPageSize);
+        if (!favouriteRepository.existsByIdAndUserId(Id, currentPrincipal.getUserId())) {
+            throw new AppException(ErrorCode.LIST_NOT_FOUND);
+        }
+        List<BookDisplayResponse> rows = favouriteRepository.findCardsByFolderIdAfter(Id,
+                CursorCodec.decode(cursor), PageRequest.of(0, pageSize + 1));
+        return CursorPages.of(rows, pageSize, BookDisplayResponse::getId);
+    }
+
     @PreAuthorize("hasAuthority('ROLE_SCOPE_USER')")
     @Transactional
     public String addBookByStatus(Long bookId, String status) {
-        // 🔹 Lấy user đăng nhập
-        var username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        Long userId = currentPrincipal.getUserId();
+        StatusBook newStatus = StatusBook.valueOf(status);
 
         // 🔹 Lấy book theo id
         Book book = bookRepository.findById(bookId)
                 .orElseThrow(() -> new RuntimeException("Book not found"));
 
-        // 🔹 Kiểm tra bookshelf của user
-        Bookshelf bookshelf = user.getBookshelf();
-        if (bookshelf == null) {
-            //  user chưa có bookshelf → tạo mới
-            bookshelf = new Bookshelf();
-            bookshelf.setUser(user);
-            user.setBookshelf(bookshelf);
-
-            //  Lưu bookshelf để có ID (chưa có item)
-            bookshelf.setItems(new ArrayList<>());
-            bookshelf = bookshelfRepository.save(bookshelf);
-        }
-
-        //  Lấy danh sách item hiện tại (tránh null)
-        List<BookshelfItem> bookshelfItems = bookshelf.getItems();
-        if (bookshelfItems == null) {
-            bookshelfItems = new ArrayList<>();
-            bookshelf.setItems(bookshelfItems);
-        }
+        // 🔹 Bookshelf của user, chưa có thì tạo mới
+        Long shelfId = getOrCreateShelfId(userId);
 
         //  Kiểm tra xem sách này đã có trong bookshelf chưa
-        Optional<BookshelfItem> existingItemOpt = bookshelfItems.stream()
-                .filter(item -> item.getBook().getId().equals(bookId))
-                .findFirst();
-
-        if (existingItemOpt.isPresent()) {
+        Optional<StatusBook> previous = bookshelfItemRepository.findStatus(shelfId, bookId);
+        if (previous.isPresent()) {
             //  Có rồi → cập nhật status
-            BookshelfItem existingItem = existingItemOpt.get();
-            existingItem.setStatus(StatusBook.valueOf(status));
-            bookshelfItemRepository.save(existingItem);
+            bookshelfItemRepository.updateStatus(shelfId, bookId, newStatus);
+            shelfStatsService.onStatusChanged(userId, previous.get(), newStatus);
 
             return " Updated status of book: " + book.getTitle();
         } else {
             //  Chưa có → thêm mới
             BookshelfItem newItem = new BookshelfItem();
             newItem.setBook(book);
-            newItem.setStatus(StatusBook.valueOf(status));
-            newItem.setBookshelf(bookshelf);
-
-            // 🔹 Lưu item
+            newItem.setStatus(newStatus);
+            newItem.setBookshelf(bookshelfRepository.getReferenceById(shelfId));
             bookshelfItemRepository.save(newItem);
-
-            // 🔹 Thêm vào list và cập nhật bookshelf
-            bookshelfItems.add(newItem);
-            bookshelfRepository.save(bookshelf);
+            shelfStatsService.onStatusChanged(userId, null, newStatus);
+            eventPublisher.publishEvent(new BookshelfChangedEvent(bookId, 1));
 
             return " Added new book to bookshelf: " + book.getTitle();
         }
     }
 
-    @PreAuthorize("isAuthenticated()")
-    public String deleteFB(Long id,Long listId) {
-        var username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+    //  Thêm/cập nhật nhiều sách một lần: 1 query IN (...) cho sách và cho kệ, ghi bằng JDBC batch trong 1 transaction
+    @PreAuthorize("hasAuthority('ROLE_SCOPE_USER')")
+    @Transactional
+    public BookshelfBulkResponse addBooksByStatus(BookshelfBulkRequest request) {
+        List<BookshelfBulkRequest.Item> items = request.getItems() == null ? List.of() : request.getItems();
+        if (items.size() > maxBulkItems) {
+            throw new AppException(ErrorCode.TOO_MANY_ITEMS);
+        }
+        Long userId = currentPrincipal.getUserId();
+
+        // Kiểm tra từng phần tử; cùng bookId xuất hiện nhiều lần thì lấy lần đầu
+        List<BookshelfBulkResponse.ItemResult> results = new ArrayList<>(items.size());
+        Map<Long, StatusBook> requested = new LinkedHashMap<>();
+        for (BookshelfBulkRequest.Item item : items) {
+            StatusBook status = toStatus(item.getStatus());
+            BookshelfBulkResponse.Outcome outcome = null;
+            if (item.getBookId() == null || status == null) {
+                outcome = BookshelfBulkResponse.Outcome.INVALID_ITEM;
+            } else if (requested.putIfAbsent(item.getBookId(), status) != null) {
+                outcome = BookshelfBulkResponse.Outcome.DUPLICATE;
+            }
+            results.add(new BookshelfBulkResponse.ItemResult(item.getBookId(), item.getStatus(), outcome));
+        }
 
-        FavouriteBooks favouriteBook = user.getFavouriteBooks().stream()
-                .filter(fb -> fb.getId().equals(listId))
-                .findFirst()
-                .orElseThrow(() -> new AppException(ErrorCode.LIST_NOT_FOUND));
+        Set<Long> books = requested.isEmpty() ? Set.of() : new HashSet<>(bookRepository.findIdsByIdIn(requested.keySet()));
+        Long shelfId = books.isEmpty() ? null : getOrCreateShelfId(userId);
+        Map<Long, StatusBook> current = new HashMap<>();
+        if (shelfId != null) {
+            bookshelfItemRepository.findStatuses(shelfId, books)
+                    .forEach(view -> current.put(view.getBookId(), view.getStatus()));
+        }
 
-        if (!favouriteBook.getBooks().removeIf(bb -> bb.getId().equals(id))) {
-            throw  new AppException(ErrorCode.BOOK_NOT_FOUND);
+        // Chỉ ghi những sách khác trạng thái đã đọc; kết quả lấy theo số dòng bị ảnh hưởng của từng dòng
+        List<Object[]> upserts = new ArrayList<>();
+        List<BookshelfBulkResponse.ItemResult> written = new ArrayList<>();
+        List<StatusBook> previousStatuses = new ArrayList<>();
+        for (BookshelfBulkResponse.ItemResult result : results) {
+            if (result.getOutcome() != null) {
+                continue;
+            }
+            Long bookId = result.getBookId();
+            StatusBook status = requested.get(bookId);
+            StatusBook previous = current.get(bookId);
+            if (!books.contains(bookId)) {
+                result.setOutcome(BookshelfBulkResponse.Outcome.BOOK_NOT_FOUND);
+            } else if (previous == status) {
+                result.setOutcome(BookshelfBulkResponse.Outcome.UNCHANGED);
+            } else {
+                upserts.add(new Object[]{status.name(), shelfId, bookId});
+                written.add(result);
+                previousStatuses.add(previous);
+            }
         }
-        favouriteRepository.save(favouriteBook);
-        return "Delete Successful:" + id;
+
+        int[] counts = upserts.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(BULK_UPSERT_SQL, upserts);
+        Map<StatusBook, Long> deltas = new EnumMap<>(StatusBook.class);
+        for (int i = 0; i < written.size(); i++) {
+            BookshelfBulkResponse.ItemResult result = written.get(i);
+            StatusBook status = requested.get(result.getBookId());
+            StatusBook previous = previousStatuses.get(i);
+            int count = counts[i];
+            // rewriteBatchedStatements gộp batch thành một câu lệnh và không trả số dòng: dùng trạng thái đã đọc
+            if (count == Statement.SUCCESS_NO_INFO) {
+                count = previous == null ? 1 : 2;
+            }
+            if (count == 1) {
+                result.setOutcome(BookshelfBulkResponse.Outcome.ADDED);
+                deltas.merge(status, 1L, Long::sum);
+                eventPublisher.publishEvent(new BookshelfChangedEvent(result.getBookId(), 1));
+            } else if (count == 2) {
+                result.setOutcome(BookshelfBulkResponse.Outcome.UPDATED);
+                deltas.merge(status, 1L, Long::sum);
+                if (previous != null) {
+                    deltas.merge(previous, -1L, Long::sum);
+                }
+            } else {
+                // Request khác vừa đặt đúng trạng thái này
+                result.setOutcome(BookshelfBulkResponse.Outcome.UNCHANGED);
+            }
+        }
+        shelfStatsService.addCounts(userId, deltas.getOrDefault(StatusBook.WANT, 0L),
+                deltas.getOrDefault(StatusBook.READING, 0L), deltas.getOrDefault(StatusBook.COMPLETED, 0L));
+
+        Map<BookshelfBulkResponse.Outcome, Long> totals = results.stream()
+                .collect(Collectors.groupingBy(BookshelfBulkResponse.ItemResult::getOutcome, Collectors.counting()));
+        return BookshelfBulkResponse.builder()
+                .total(results.size())
+                .added(totals.getOrDefault(BookshelfBulkResponse.Outcome.ADDED, 0L))
+                .updated(totals.getOrDefault(BookshelfBulkResponse.Outcome.UPDATED, 0L))
+                .unchanged(totals.getOrDefault(BookshelfBulkResponse.Outcome.UNCHANGED, 0L))
+                .failed(totals.getOrDefault(BookshelfBulkResponse.Outcome.BOOK_NOT_FOUND, 0L)
+                        + totals.getOrDefault(BookshelfBulkResponse.Outcome.INVALID_ITEM, 0L)
+                        + totals.getOrDefault(BookshelfBulkResponse.Outcome.DUPLICATE, 0L))
+                .results(results)
+                .build();
     }
 
-    @PreAuthorize("isAuthenticated()")
-    public Page<BookResponse> getBooksDependOnStatus(String status, Integer page, Integer size) {
-        var username = SecurityContextHolder.getContext().getAuthentication().getName();
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    private Long getOrCreateShelfId(Long userId) {
+        return bookshelfRepository.findIdByUserId(userId).orElseGet(() -> {
+            Bookshelf bookshelf = new Bookshelf();
+            bookshelf.setUser(currentPrincipal.getUserReference());
+            bookshelf.setItems(new ArrayList<>());
+            return bookshelfRepository.save(bookshelf).getId();
+        });
+    }
 
-        StatusBook enumStatus;
+    private static StatusBook toStatus(String status) {
+        if (status == null) {
+            return null;
+        }
         try {
-            enumStatus = StatusBook.valueOf(status.toUpperCase());
+            return StatusBook.valueOf(status.toUpperCase());
         } catch (IllegalArgumentException e) {
-            throw new RuntimeException("Invalid status: " + status);
+            return null;
         }
+    }
 
-        List<BookshelfItem> bookshelfItems = user.getBookshelf().getItems();
-
-        List<Book> books = bookshelfItems.stream()
-                .filter(item -> item.getStatus() == enumStatus)
-                .map(BookshelfItem::getBook)
-                .toList();
-        System.out.println("----------------------------------------------------------------");
-        System.out.println("Bookshelf items: " + books.size());
-        int start = page * size;
-        int end = Math.min(start + size, books.size());
-        if (start >= books.size()) {
-            return Page.empty();
+    @PreAuthorize("isAuthenticated()")
+    @Transactional
+    public String deleteFB(Long id,Long listId) {
+        if (!favouriteRepository.existsByIdAndUserId(listId, currentPrincipal.getUserId())) {
+            throw new AppException(ErrorCode.LIST_NOT_FOUND);
         }
+        if (favouriteRepository.removeBook(listId, id) == 0) {
+            throw  new AppException(ErrorCode.BOOK_NOT_FOUND);
+        }
+        shelfStatsService.onFavouriteChanged(listId, -1);
+        return "Delete Successful:" + id;
+    }
 
-        List<BookResponse> pagedBooks = books.subList(start, end).stream()
-                .map(book -> new BookResponse(
-                        book.getId(),
-                        book.getTitle(),
-                        book.getAuthor(),
-                        book.getDescription(),
-                        book.getCoverImage()
-                ))
-                .toList();
-        System.out.println("----------------------------------------------------------------");
-        System.out.println("Bookshelf items: " + books.size());
-        System.out.println(books.getFirst().getTitle());
-        System.out.println(pagedBooks.getFirst().getId());
+    @PreAuthorize("isAuthenticated()")
+    public Page<BookResponse> getBooksDependOnStatus(String status, Integer page, Integer size) {
+        Long userId = currentPrincipal.getUserId();
+        StatusBook enumStatus = parseStatus(status);
 
+        // Tổng số lấy từ bộ đếm user_shelf_stats, không cần câu COUNT
         Pageable pageable = PageRequest.of(page, size);
-        return new PageImpl<>(pagedBooks, pageable, books.size());
+        List<BookResponse> books = bookshelfItemRepository.findBooksByStatus(userId, enumStatus, pageable);
+        return new PageImpl<>(books, pageable, shelfStatsService.count(userId, enumStatus));
     }
 
-
-//    Count book depend on mode
-public Long countBook(String mode, User user, Long listId) {
-    if (user == null) {
-        return 0L;
+    @PreAuthorize("isAuthenticated()")
+    public CursorPageResponse<BookResponse> getBooksDependOnStatusAfter(String status, String cursor, Integer size) {
+        int pageSize = CursorPages.checkSize(size, maxPageSize);
+        Long userId = currentPrincipal.getUserId();
+        StatusBook enumStatus = parseStatus(status);
+
+        List<ShelfBookView> rows = bookshelfItemRepository.findBooksByStatusAfter(userId, enumStatus,
+                CursorCodec.decode(cursor), PageRequest.of(0, pageSize + 1));
+        return CursorPages.of(rows, pageSize, ShelfBookView::getItemId, row -> new BookResponse(row.getId(),
+                row.getTitle(), row.getAuthor(), row.getDescription(), row.getCoverImage()));
     }
-    if (mode.equals("FB")) {
-        // Nếu FavouriteBooks có thể null
-        if (user.getFavouriteBooks() == null) {
-            return 0L;
-        }
-        return user.getFavouriteBooks().stream()
-                .filter(fb -> fb.getId().equals(listId))
-                .findFirst()
-                .map(fb -> (long) fb.getBooks().size())
-                .orElse(0L);
-    } else {
-        if (user.getBookshelf() == null || user.getBookshelf().getItems() == null) {
-            return 0L;
+
+    private static StatusBook parseStatus(String status) {
+        try {
+            return StatusBook.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid status: " + status);
         }
-        return user.getBookshelf().getItems().stream()
-                .filter(bsi -> bsi.getStatus() == StatusBook.valueOf(mode))
-                .count();
     }
 }
-}
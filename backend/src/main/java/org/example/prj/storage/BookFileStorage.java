@@ -0,0 +1,96 @@
+package org.example.prj.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.example.prj.exception.AppException;
+import org.example.prj.exception.ErrorCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Map;
+
+// File sách PDF/EPUB admin upload, phục vụ tại /book/files/{name}
+@Slf4j
+@Component
+public class BookFileStorage {
+    public static final String URL_PREFIX = "/book/files/";
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "pdf", "application/pdf",
+            "epub", "application/epub+zip");
+    // Tên file theo hash nên nội dung không bao giờ đổi; private vì file chỉ dành cho user đã đăng nhập
+    private static final String CACHE_CONTROL = "private, max-age=31536000, immutable";
+
+    @Value("${storage.books.dir:./data/books}")
+    private String dir;
+
+    private ContentAddressedStore store;
+
+    @PostConstruct
+    void init() throws IOException {
+        store = new ContentAddressedStore(Paths.get(dir));
+    }
+
+    // Trả về URL để lưu vào Book.fileUrl
+    public String store(MultipartFile file) {
+        String extension = extensionOf(file.getOriginalFilename());
+        if (!CONTENT_TYPES.containsKey(extension)) {
+            throw new AppException(ErrorCode.UNSUPPORTED_FILE_TYPE);
+        }
+        ContentAddressedStore.Stored stored;
+        try (InputStream content = file.getInputStream()) {
+            stored = store.store(content, extension);
+        } catch (IOException e) {
+            throw new AppException(ErrorCode.FILE_UPLOAD_FAILED);
+        }
+        if (stored.created()) {
+            deleteOnRollback(stored.name());
+        }
+        return URL_PREFIX + stored.name();
+    }
+
+    // File ghi trong transaction: transaction rollback thì không sách nào trỏ tới file mới này, xóa đi
+    private void deleteOnRollback(String name) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+                try {
+                    store.delete(name);
+                } catch (IOException e) {
+                    log.warn("Could not delete {} after rollback: {}", name, e.getMessage());
+                }
+            }
+        });
+    }
+
+    public void send(String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = store.resolve(name);
+        if (file == null) {
+            throw new AppException(ErrorCode.FILE_NOT_FOUND);
+        }
+        FileSender.send(request, response, file, ContentAddressedStore.hashOf(name),
+                CONTENT_TYPES.get(extensionOf(name)), CACHE_CONTROL);
+    }
+
+    private static String extensionOf(String filename) {
+        if (filename == null || filename.lastIndexOf('.') < 0) {
+            return "";
+        }
+        return filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+}
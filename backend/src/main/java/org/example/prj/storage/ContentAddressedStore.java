@@ -0,0 +1,100 @@
+package org.example.prj.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+// File trên đĩa đặt tên theo SHA-256 nội dung: {root}/{2 ký tự đầu}/{sha256}.{ext}
+public class ContentAddressedStore {
+    private static final Pattern NAME = Pattern.compile("[0-9a-f]{64}\\.[a-z0-9]{1,8}");
+
+    private final Path root;
+
+    // created = false khi nội dung này đã có sẵn trong store
+    public record Stored(String name, boolean created) {
+    }
+
+    public ContentAddressedStore(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        Files.createDirectories(this.root);
+    }
+
+    // Ghi ra file tạm trong lúc tính hash rồi mới chuyển vào chỗ
+    public Stored store(InputStream content, String extension) throws IOException {
+        Path temp = Files.createTempFile(root, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                content.transferTo(out);
+            }
+            String name = HexFormat.of().formatHex(digest.digest()) + "." + extension;
+            Path target = pathOf(name);
+            if (Files.exists(target)) {
+                return new Stored(name, false);
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            return new Stored(name, true);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Lưu nội dung đã có sẵn trong bộ nhớ (ảnh thumbnail nhỏ)
+    public String store(byte[] content, String extension) throws IOException {
+        String name = HexFormat.of().formatHex(sha256().digest(content)) + "." + extension;
+        Path target = pathOf(name);
+        if (!Files.exists(target)) {
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), "upload-", ".tmp");
+            try {
+                Files.write(temp, content);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return name;
+    }
+
+    // null nếu tên sai định dạng hoặc không có file
+    public Path resolve(String name) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            return null;
+        }
+        Path path = pathOf(name);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    public void delete(String name) throws IOException {
+        Path path = resolve(name);
+        if (path != null) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    // Hash nằm trong tên file nên dùng luôn làm ETag
+    public static String hashOf(String name) {
+        return name.substring(0, name.indexOf('.'));
+    }
+
+    private Path pathOf(String name) {
+        return root.resolve(name.substring(0, 2)).resolve(name);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
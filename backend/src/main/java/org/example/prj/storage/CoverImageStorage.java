@@ -0,0 +1,363 @@
+package org.example.prj.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.example.prj.DTO.Projection.BookCoverView;
+import org.example.prj.entity.Book;
+import org.example.prj.event.BookChangedEvent;
+import org.example.prj.event.BooksImportedEvent;
+import org.example.prj.exception.AppException;
+import org.example.prj.exception.ErrorCode;
+import org.example.prj.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Ảnh bìa và thumbnail, lưu theo hash nội dung và phục vụ tại /book/covers/{name}
+@Slf4j
+@Component
+public class CoverImageStorage {
+    public static final String URL_PREFIX = "/book/covers/";
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "jpg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif");
+    // Ảnh bìa công khai và không bao giờ đổi nội dung: CDN/trình duyệt cache vĩnh viễn
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+    // Chặn ảnh "bom giải nén": kích thước khai báo lớn hơn thế này thì không decode
+    private static final long MAX_PIXELS = 50_000_000L;
+    // Redirect tự theo dõi để kiểm tra địa chỉ của từng bước
+    private static final int MAX_REDIRECTS = 3;
+    private static final int BACKFILL_BATCH = 200;
+
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${storage.covers.dir:./data/covers}")
+    private String dir;
+    @Value("${storage.covers.thumbnail-width:240}")
+    private int thumbnailWidth;
+    @Value("${storage.covers.thumbnail-height:360}")
+    private int thumbnailHeight;
+    @Value("${storage.covers.max-bytes:10485760}")
+    private int maxBytes;
+
+    private ContentAddressedStore store;
+    private HttpClient httpClient;
+    // Một luồng nền là đủ: chỉ chạy khi admin thêm/sửa ảnh bìa
+    private ExecutorService executor;
+    // Đã có một lượt bù thumbnail đang chờ chạy
+    private final AtomicBoolean backfillQueued = new AtomicBoolean();
+    // Sách có ảnh bìa không tạo được thumbnail: lượt bù sau không tải lại
+    private final Set<Long> failed = ConcurrentHashMap.newKeySet();
+
+    public record StoredCover(String imageUrl, String thumbnailUrl) {
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        store = new ContentAddressedStore(Paths.get(dir));
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cover-thumbnails");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Upload ảnh bìa: lưu ảnh gốc và thumbnail, trả về URL của cả hai
+    public StoredCover store(MultipartFile file) {
+        byte[] bytes;
+        try (InputStream in = file.getInputStream()) {
+            bytes = in.readNBytes(maxBytes + 1);
+        } catch (IOException e) {
+            throw new AppException(ErrorCode.FILE_UPLOAD_FAILED);
+        }
+        if (bytes.length > maxBytes) {
+            throw new AppException(ErrorCode.FILE_TOO_LARGE);
+        }
+        try {
+            DecodedImage decoded = decode(bytes);
+            if (decoded == null) {
+                throw new AppException(ErrorCode.UNSUPPORTED_FILE_TYPE);
+            }
+            String imageName = store.store(bytes, decoded.extension());
+            String thumbnailName = store.store(thumbnail(decoded.image()), "jpg");
+            return new StoredCover(URL_PREFIX + imageName, URL_PREFIX + thumbnailName);
+        } catch (IOException e) {
+            throw new AppException(ErrorCode.FILE_UPLOAD_FAILED);
+        }
+    }
+
+    public void send(String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = store.resolve(name);
+        if (file == null) {
+            throw new AppException(ErrorCode.FILE_NOT_FOUND);
+        }
+        FileSender.send(request, response, file, ContentAddressedStore.hashOf(name),
+                CONTENT_TYPES.get(name.substring(name.indexOf('.') + 1)), CACHE_CONTROL);
+    }
+
+    // Sách được lưu với ảnh bìa mới (coverThumbnail bị xóa): tạo thumbnail sau khi commit, không chặn request
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        Book book = event.getBook();
+        if (book == null || book.getCoverImage() == null || book.getCoverImage().isBlank()
+                || book.getCoverThumbnail() != null) {
+            return;
+        }
+        Long bookId = book.getId();
+        String coverImage = book.getCoverImage();
+        failed.remove(bookId);
+        executor.execute(() -> generateThumbnail(bookId, coverImage));
+    }
+
+    // Sách có từ trước và sách import bằng JDBC không qua onBookChanged: quét các sách còn thiếu thumbnail
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        scheduleBackfill();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksImported(BooksImportedEvent event) {
+        scheduleBackfill();
+    }
+
+    private void scheduleBackfill() {
+        if (backfillQueued.compareAndSet(false, true)) {
+            executor.execute(this::backfill);
+        }
+    }
+
+    private void backfill() {
+        backfillQueued.set(false);
+        long lastId = 0;
+        int processed = 0;
+        List<BookCoverView> rows;
+        do {
+            rows = bookRepository.findCoversWithoutThumbnail(lastId, PageRequest.of(0, BACKFILL_BATCH));
+            for (BookCoverView row : rows) {
+                if (!failed.contains(row.getId())) {
+                    generateThumbnail(row.getId(), row.getCoverImage());
+                    processed++;
+                }
+                lastId = row.getId();
+            }
+        } while (!rows.isEmpty() && !Thread.currentThread().isInterrupted());
+        if (processed > 0) {
+            log.info("Thumbnail backfill processed {} books", processed);
+        }
+    }
+
+    private void generateThumbnail(Long bookId, String coverImage) {
+        try {
+            byte[] bytes = load(coverImage);
+            DecodedImage decoded = (bytes == null) ? null : decode(bytes);
+            if (decoded == null) {
+                failed.add(bookId);
+                log.warn("Cover of book {} is not a readable image: {}", bookId, coverImage);
+                return;
+            }
+            String thumbnailUrl = URL_PREFIX + store.store(thumbnail(decoded.image()), "jpg");
+            // Chỉ ghi nếu ảnh bìa chưa bị đổi tiếp trong lúc đang xử lý
+            if (bookRepository.updateCoverThumbnail(bookId, coverImage, thumbnailUrl) > 0) {
+                bookRepository.findById(bookId).ifPresent(saved ->
+                        eventPublisher.publishEvent(BookChangedEvent.updated(saved, saved.getSearchKey())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            failed.add(bookId);
+            log.warn("Could not create thumbnail for book {}: {}", bookId, e.getMessage());
+        }
+    }
+
+    // Ảnh đã upload thì đọc từ đĩa, còn lại tải về (tối đa max-bytes)
+    private byte[] load(String coverImage) throws IOException, InterruptedException {
+        if (coverImage.startsWith(URL_PREFIX)) {
+            Path file = store.resolve(coverImage.substring(URL_PREFIX.length()));
+            return file == null ? null : Files.readAllBytes(file);
+        }
+        URI uri = URI.create(coverImage.trim());
+        for (int hop = 0; hop <= MAX_REDIRECTS; hop++) {
+            if (!isPublicHttpUri(uri)) {
+                log.warn("Refusing to fetch cover from {}", uri);
+                return null;
+            }
+            HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(20)).GET().build();
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                int status = response.statusCode();
+                if (status >= 300 && status < 400) {
+                    String location = response.headers().firstValue("Location").orElse(null);
+                    if (location == null) {
+                        return null;
+                    }
+                    uri = uri.resolve(location);
+                    continue;
+                }
+                if (status != 200) {
+                    return null;
+                }
+                byte[] bytes = body.readNBytes(maxBytes + 1);
+                return bytes.length > maxBytes ? null : bytes;
+            }
+        }
+        return null;
+    }
+
+    // URL do admin/file import nhập: chỉ cho http(s) tới địa chỉ công khai, không gọi vào mạng nội bộ
+    private static boolean isPublicHttpUri(URI uri) {
+        if ((!"http".equalsIgnoreCase(uri.getScheme()) && !"https".equalsIgnoreCase(uri.getScheme()))
+                || uri.getHost() == null) {
+            return false;
+        }
+        try {
+            for (InetAddress address : InetAddress.getAllByName(uri.getHost())) {
+                if (address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+                        || address.isAnyLocalAddress() || address.isMulticastAddress()
+                        // IPv6 unique local fc00::/7
+                        || (address instanceof Inet6Address && (address.getAddress()[0] & 0xfe) == 0xfc)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    private record DecodedImage(BufferedImage image, String extension) {
+    }
+
+    // Đọc kích thước trước khi decode để bỏ qua ảnh quá lớn
+    private static DecodedImage decode(byte[] bytes) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                String extension = switch (reader.getFormatName().toLowerCase(Locale.ROOT)) {
+                    case "jpeg", "jpg" -> "jpg";
+                    case "png" -> "png";
+                    case "gif" -> "gif";
+                    default -> null;
+                };
+                if (extension == null || (long) reader.getWidth(0) * reader.getHeight(0) > MAX_PIXELS) {
+                    return null;
+                }
+                return new DecodedImage(reader.read(0), extension);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private byte[] thumbnail(BufferedImage source) throws IOException {
+        double scale = Math.min(1.0, Math.min((double) thumbnailWidth / source.getWidth(),
+                (double) thumbnailHeight / source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        // Thu nhỏ từng bước một nửa rồi mới về kích thước cuối, ảnh mịn hơn so với scale một lần
+        BufferedImage current = source;
+        int w = source.getWidth();
+        int h = source.getHeight();
+        while (w / 2 >= width && h / 2 >= height) {
+            w /= 2;
+            h /= 2;
+            current = scale(current, w, h);
+        }
+        BufferedImage result = scale(current, width, height);
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(0.85f);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(result, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    // JPEG không có kênh alpha: vẽ lên nền trắng
+    private static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+}